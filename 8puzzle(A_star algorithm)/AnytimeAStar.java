@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+
+// Weighted A* and anytime repairing A* (ARA*), used by Solver in Mode.WEIGHTED and Mode.ANYTIME
+// Nodes are ordered by moves + w * heuristic, which heads for the goal much faster than A* does, and the first
+// solution is at most w times longer than a shortest one.
+// ARA* then lowers w step by step down to 1, reusing everything found so far: a board reached in fewer moves
+// after it was expanded in the current pass is set aside (not expanded again in that pass) and only put back
+// in the queue for the next one. Once the budget runs out, the best solution so far is kept, along with
+// the bound on how far from shortest it may be.
+
+class AnytimeAStar extends Search {
+    private static final double STEP = 0.5; // w is lowered by that much after every pass
+
+    private final Budget budget;
+    private final SearchMetrics metrics;
+    private final boolean counting;
+
+    private BucketQueue<Node> open = new BucketQueue<Node>();
+    private ArrayList<Node> incons = new ArrayList<Node>(); // reached in fewer moves after being expanded
+    private final TranspositionTable seen = new TranspositionTable();
+    private double w;
+    private int pass;                  // nodes expanded in this pass are marked with it
+    private Node incumbent;            // goal node of the shortest solution so far
+    private double bound;              // incumbent is at most that many times longer than a shortest solution
+
+    // initial board has to be solvable; 1 <= weight <= Solver.MAX_WEIGHT,
+    // 'anytime' - keep lowering it while the budget lasts
+    public AnytimeAStar(Board initial, Heuristic heuristic, Budget budget, SearchMetrics metrics,
+                        double weight, boolean anytime) {
+        super(heuristic, initial.size());
+        this.budget = budget;
+        this.metrics = metrics;
+        counting = metrics.counting;
+        w = weight;
+        pass = 1;
+        bound = Double.POSITIVE_INFINITY;
+
+        Node root = new Node(initial, 0, estimate(initial), -1, null);
+        seen.improve(initial.key(), 0, root);
+        push(root);
+        if (initial.isGoal()) incumbent = root;
+
+        while (true) {
+            boolean finished = improve();
+            if (incumbent == null) { // budget ran out before any solution
+                moves = -1;
+                return;
+            }
+            // the best solution can't be shorter than the least (moves + heuristic) that is still waiting
+            ArrayList<Node> waiting = drain();
+            int lower = Integer.MAX_VALUE;
+            for (Node node : waiting)
+                lower = Math.min(lower, node.moves + node.h);
+            double ratio = lower >= incumbent.moves ? 1 : (double) incumbent.moves / lower;
+            bound = Math.min(bound, finished ? Math.min(w, ratio) : ratio);
+
+            if (!finished || !anytime || bound <= 1) break;
+            w = Math.max(1, Math.min(w - STEP, bound));
+            pass++;
+            for (Node node : waiting)
+                push(node);
+        }
+
+        solved(incumbent);
+    }
+
+    // a pass with the current w: expand until no waiting node can beat the incumbent,
+    // returns false if the budget ran out first
+    private boolean improve() {
+        while (!open.isEmpty() && (incumbent == null || open.minPriority() < incumbent.moves)) {
+            Node cur = open.delMin();
+            if (cur.moves > seen.get(cur.board.key())) { // reached in fewer moves later on
+                if (counting) metrics.duplicates++;
+                continue;
+            }
+            if (cur.board.isGoal()) continue;            // nothing to find past the goal
+            if (!metrics.expand(budget)) {
+                push(cur); // still waiting: the bound taken over the queue has to count it
+                return false;
+            }
+            cur.pass = pass;
+
+            for (int dir = 0; dir < 4; dir++) {
+                if (dir == (cur.dir ^ 1) || !cur.board.canSlide(dir)) continue;
+                Board neighbor = cur.board.slide(dir);
+                int m = cur.moves + 1;
+                if (counting) metrics.generated++;
+                int known = seen.get(neighbor.key());
+                if (known >= 0 && known <= m) {
+                    if (counting) metrics.duplicates++;
+                    continue;
+                }
+                Node old = (Node) seen.item(neighbor.key());
+                Node node = new Node(neighbor, m, old == null ? estimate(neighbor) : old.h, dir, cur);
+                // no shorter solution can go through a board that doesn't beat the incumbent even by estimate
+                if (incumbent != null && m + node.h >= incumbent.moves) continue;
+
+                seen.improve(neighbor.key(), m, node);
+                if (neighbor.isGoal()) incumbent = node;
+                if (old != null && old.pass == pass) incons.add(node); // expanded already in this pass
+                else                                 push(node);
+            }
+            if (counting) metrics.open(open.size() + incons.size());
+        }
+        return true;
+    }
+
+    // everything still waiting: the queue and the boards set aside in this pass, stale nodes left out
+    private ArrayList<Node> drain() {
+        ArrayList<Node> waiting = new ArrayList<Node>();
+        for (Node node : incons)
+            if (node.moves == seen.get(node.board.key())) waiting.add(node);
+        while (!open.isEmpty()) {
+            Node node = open.delMin();
+            if (node.moves == seen.get(node.board.key())) waiting.add(node);
+        }
+        open = new BucketQueue<Node>();
+        incons = new ArrayList<Node>();
+        return waiting;
+    }
+
+    private void push(Node node) {
+        open.insert(node, node.moves + (int) (w * node.h), node.h);
+    }
+
+    // the solution is at most that many times longer than a shortest one (1 - it is a shortest one)
+    public double bound() {
+        return bound;
+    }
+
+    private static class Node extends Search.Node {
+        int pass;       // last pass that expanded the node, 0 - none
+
+        Node(Board board, int moves, int h, int dir, Node prev) {
+            super(board, moves, h, dir, prev);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import edu.princeton.cs.algs4.In;
+
+// Solves many boards at once on a fixed pool of worker threads
+// Boards are read one after another, in the format of Solver's test client (a line with n, or with the rows
+// and the columns of a rectangular board, then the tiles), and handed to the workers;
+// at most a few per worker are waiting at a time, so any number of boards can be streamed through.
+// Results are written in the order of the input, one line per board
+
+public class BatchSolver {
+    private final ExecutorService workers;
+    private final int window;          // boards read ahead of the first unfinished one
+    private final Solver.Mode mode;
+    private final Heuristic heuristic; // shared by all the workers, it is only read
+    private final Budget budget;       // for every single board
+
+    public BatchSolver(int threads, Solver.Mode mode, Heuristic heuristic, Budget budget) {
+        if (threads < 1 || mode == null || budget == null) throw new IllegalArgumentException();
+        // daemon workers: a failure on the reading thread must not leave the JVM waiting on a solve
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "batch solver");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        window = 4 * threads;
+        this.mode = mode;
+        this.heuristic = heuristic;
+        this.budget = budget;
+    }
+
+    // solve every board of the input, printing "<index>: <result>" lines in input order
+    // (on bad input the boards solved so far are still printed and flushed before the exception gets out)
+    public void solveAll(In in, PrintWriter out) {
+        ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+        int index = 0;
+        try {
+            while (!in.isEmpty()) {
+                // the size is told by its line: the rest of the last board's line and blank lines come first
+                String line = in.readLine().trim();
+                while (line.isEmpty())
+                    line = in.readLine().trim();
+                String[] size = line.split("\\s+");
+                if (size.length > 2) throw new IllegalArgumentException("not a board size: " + line);
+                int rows = Integer.parseInt(size[0]), cols = size.length > 1 ? Integer.parseInt(size[1]) : rows;
+                int[][] tiles = new int[rows][cols];
+                for (int i = 0; i < rows; i++)
+                    for (int j = 0; j < cols; j++)
+                        tiles[i][j] = in.readInt();
+
+                final Board board = new Board(tiles);
+                final int id = ++index;
+                pending.add(workers.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return id + ": " + solve(board);
+                    }
+                }));
+                if (pending.size() >= window)
+                    out.println(result(pending.poll()));
+            }
+            while (!pending.isEmpty())
+                out.println(result(pending.poll()));
+        }
+        catch (RuntimeException e) {
+            // boards already solved still get their lines, up to the first one that isn't done
+            while (!pending.isEmpty() && pending.peek().isDone())
+                out.println(result(pending.poll()));
+            throw e;
+        }
+        finally {
+            out.flush();
+        }
+    }
+
+    // stop the workers: boards still waiting are dropped
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private String solve(Board board) {
+        // tables made for another dimension can't be used, such boards get manhattan distance
+        Heuristic h = heuristic;
+        if (h instanceof PatternDatabase
+                && (((PatternDatabase) h).dimension() != board.rows() || board.rows() != board.cols()))
+            h = null;
+
+        Solver solver = new Solver(board, mode, h, budget);
+        SearchMetrics m = solver.metrics();
+        String work = " (" + m.elapsedMillis() + " ms, " + m.expanded() + " nodes)";
+
+        if (solver.budgetExceeded()) return "budget exceeded" + work;
+        if (!solver.isSolvable())    return "unsolvable";
+        return solver.moves() + " moves" + work;
+    }
+
+    private static String result(Future<String> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // arguments: input file, number of threads, node budget and time budget (ms) per board (0 - unlimited),
+    // optionally "ida" for iterative deepening, and "lc" or a pattern database file for the heuristic
+    public static void main(String[] args) throws IOException {
+        In in = new In(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        Budget budget = new Budget(Long.parseLong(args[2]), Long.parseLong(args[3]));
+        Solver.Mode mode = args.length > 4 && args[4].equals("ida") ? Solver.Mode.IDA_STAR : Solver.Mode.ASTAR;
+
+        Heuristic heuristic = null;
+        if (args.length > 5 && args[5].equals("lc")) heuristic = new LinearConflict();
+        else if (args.length > 5) heuristic = PatternDatabase.load(new File(args[5]));
+
+        BatchSolver batch = new BatchSolver(threads, mode, heuristic, budget);
+        PrintWriter out = new PrintWriter(System.out);
+        try {
+            batch.solveAll(in, out);
+        }
+        finally {
+            batch.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+// Bidirectional "meet in the middle" search (MM) used by Solver in Mode.BIDIRECTIONAL
+// One search goes forward from the initial board, the other one backward from the goal board.
+// A node of either side has priority max(moves + heuristic, 2 * moves), so no side gets past the middle of
+// a shortest solution before the other one reaches it, and the side with the least priority is expanded.
+// Every board generated by one side is looked up among the boards of the other one; the shortest meeting
+// is the solution once no priority left in the queues is below its length
+
+class BidirectionalSearch extends Search {
+    private final Board.Grid grid;     // coordinate tables of the board's shape (the heuristic is forward only)
+    private final int[] start;         // start[tile] - position of the tile on the initial board
+
+    private int best;                  // length of the shortest meeting so far
+    private Node meetForward, meetBackward;
+
+    // initial board has to be solvable
+    public BidirectionalSearch(Board initial, Heuristic heuristic, Budget budget, SearchMetrics metrics) {
+        super(heuristic, initial.size());
+        grid = initial.grid();
+        start = new int[grid.size];
+        for (int q = 0; q < grid.size; q++)
+            start[initial.tileAt(q)] = q;
+
+        boolean counting = metrics.counting;
+        BucketQueue<Node> forward = new BucketQueue<Node>(), backward = new BucketQueue<Node>();
+        TranspositionTable seenForward = new TranspositionTable(), seenBackward = new TranspositionTable();
+
+        // distance from the goal to the initial board is the same as the other way round
+        Board goal = Board.goal(grid.rows, grid.cols);
+        Node first = new Node(initial, 0, estimate(initial), -1, null);
+        Node last = new Node(goal, 0, initial.manhattan(), -1, null);
+        push(forward, seenForward, first);
+        push(backward, seenBackward, last);
+
+        best = Integer.MAX_VALUE;
+        if (initial.equals(goal)) {
+            best = 0;
+            meetForward = first;
+            meetBackward = last;
+        }
+
+        while (true) {
+            int pf = forward.isEmpty()  ? Integer.MAX_VALUE : forward.minPriority();
+            int pb = backward.isEmpty() ? Integer.MAX_VALUE : backward.minPriority();
+            // no path that isn't found yet can be shorter than the least priority
+            if (best <= Math.min(pf, pb)) break;
+
+            boolean ahead = pf <= pb;
+            BucketQueue<Node> open = ahead ? forward : backward;
+            TranspositionTable seen = ahead ? seenForward : seenBackward;
+            TranspositionTable other = ahead ? seenBackward : seenForward;
+
+            Node cur = open.delMin();
+            if (cur.moves > seen.get(cur.board.key())) { // reached in fewer moves later on
+                if (counting) metrics.duplicates++;
+                continue;
+            }
+            if (!metrics.expand(budget)) {
+                moves = -1;
+                return;
+            }
+
+            for (int dir = 0; dir < 4; dir++) {
+                if (dir == (cur.dir ^ 1) || !cur.board.canSlide(dir)) continue;
+                Board neighbor = cur.board.slide(dir);
+                int h = ahead ? estimate(neighbor) : toInitial(cur, neighbor);
+                Node node = new Node(neighbor, cur.moves + 1, h, dir, cur);
+                if (counting) metrics.generated++;
+                if (!push(open, seen, node)) {
+                    if (counting) metrics.duplicates++;
+                    continue;
+                }
+
+                // has the other side been here?
+                int m = other.get(neighbor.key());
+                if (m >= 0 && node.moves + m < best) {
+                    best = node.moves + m;
+                    Node met = (Node) other.item(neighbor.key());
+                    meetForward = ahead ? node : met;
+                    meetBackward = ahead ? met : node;
+                }
+            }
+            if (counting) metrics.open(forward.size() + backward.size());
+        }
+
+        // splice the halves: forward moves up to the meeting, then backward moves undone from there
+        moves = best;
+        path = new byte[moves];
+        int i = meetForward.moves;
+        for (Node cur = meetForward; cur.prev != null; cur = cur.prev)
+            path[--i] = (byte) cur.dir;
+        i = meetForward.moves;
+        for (Node cur = meetBackward; cur.prev != null; cur = cur.prev)
+            path[i++] = (byte) (cur.dir ^ 1);
+    }
+
+    // put the node in the queue, unless its board was already reached in as few moves
+    private static boolean push(BucketQueue<Node> open, TranspositionTable seen, Node node) {
+        if (!seen.improve(node.board.key(), node.moves, node)) return false;
+        open.insert(node, Math.max(node.moves + node.h, 2 * node.moves), node.moves);
+        return true;
+    }
+
+    // backward heuristic - manhattan distance to the initial board, only the moved tile changes it
+    private int toInitial(Node parent, Board board) {
+        int from = board.blank(), to = parent.board.blank();
+        int tile = board.tileAt(to);
+        return parent.h - grid.between(start[tile], from) + grid.between(start[tile], to);
+    }
+}
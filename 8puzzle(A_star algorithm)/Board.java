@@ -4,60 +4,97 @@ import java.util.Iterator;
 // Project mark - 97
 
 public class Board {
-    private final int n;
-    private int[][] tiles; 
-    private int row, col; // position of zero
-    private int hamming, manhattan;
+    private final Grid grid;    // shape of the board, shared by all the boards made from this one
+    private final long packed;  // up to 16 cells: tiles packed by 4 bits per cell, cell i takes bits 4i..4i+3
+    private final byte[] cells; // more cells: tiles in row-major order (2 bytes per cell once tiles don't fit in a byte)
+    private final int blank;    // position of zero, in row-major order
+    private final long hash;    // more than 16 cells: xor of mix(tile, position) over all tiles, kept up to date by slide()
+    private final int hamming, manhattan;
     private Board twin;
-    
-    // create a board from an n-by-n array of tiles,
+
+    // create a board from an n-by-n (or any rectangular) array of tiles,
     // where tiles[row][col] = tile at (row, col)
     public Board(int[][] tiles) {
-        n = tiles.length;
-        this.tiles = new int[n][n];
+        int cols = tiles.length == 0 ? 0 : tiles[0].length;
+        for (int[] row : tiles)
+            if (row.length != cols) throw new IllegalArgumentException("rows of different length");
+        grid = new Grid(tiles.length, cols);
         twin = null;
-        
-        hamming = 0; 
-        manhattan = 0;
-        
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                this.tiles[i][j] = tiles[i][j];
+
+        int size = grid.size;
+        long p = 0, k = 0;
+        byte[] c = size > 16 ? new byte[size*width(size)] : null;
+        int zero = 0, h = 0, m = 0;
+
+        for (int i = 0; i < grid.rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int q = i*cols + j, tile = tiles[i][j];
+                if (c == null) p |= (long) tile << (q << 2);
+                else {
+                    put(c, size, q, tile);
+                    if (tile != 0) k ^= mix((long) tile * size + q);
+                }
                 // get coordinates of zero on the board
-                if      (this.tiles[i][j] == 0) { 
-                    row = i; 
-                    col = j; 
-                } 
-                else if ((tiles[i][j] - 1) != i*n + j) {
-                    hamming++;                                        // calculate hamming distance
-                    manhattan += Math.abs((tiles[i][j]-1) / n - i);       // account for vertical distance
-                    manhattan += Math.abs((tiles[i][j]-1) % n - j);       // account for horizontal distance
+                if      (tile == 0)
+                    zero = q;
+                else if ((tile - 1) != q) {
+                    h++;                               // calculate hamming distance
+                    m += grid.distance(tile, q);       // and manhattan distance
                 }
-                
             }
-        }  
+        }
+        packed = p;
+        cells = c;
+        hash = k;
+        blank = zero;
+        hamming = h;
+        manhattan = m;
     }
-                                           
+
+    // board made out of already encoded tiles, used for O(1) neighbor generation
+    private Board(Grid grid, long packed, byte[] cells, long hash, int blank, int hamming, int manhattan) {
+        this.grid = grid;
+        this.packed = packed;
+        this.cells = cells;
+        this.hash = hash;
+        this.blank = blank;
+        this.hamming = hamming;
+        this.manhattan = manhattan;
+        this.twin = null;
+    }
+
     // string representation of this board (by project requirement)
+    // (a rectangular board starts with both of its dimensions: rows and columns)
     public String toString() {
-        StringBuilder stb = new StringBuilder(2*n*n + n + 2);
-        
-        stb.append(n);
+        int rows = grid.rows, cols = grid.cols;
+        StringBuilder stb = new StringBuilder(2*rows*cols + rows + 6);
+
+        stb.append(rows);
+        if (cols != rows) stb.append(" ").append(cols);
         stb.append("\n");
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                stb.append(tiles[i][j]);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                stb.append(tileAt(i*cols + j));
                 stb.append(" ");
             }
             stb.append("\n");
         }
-        
+
         return stb.toString();
     }
 
-    // board dimension n
+    // board dimension n (number of rows of a rectangular board)
     public int dimension() {
-        return n;
+        return grid.rows;
+    }
+
+    // rows and columns of the board (both are n for an n-by-n one)
+    public int rows() {
+        return grid.rows;
+    }
+
+    public int cols() {
+        return grid.cols;
     }
 
     // number of tiles out of place
@@ -80,114 +117,274 @@ public class Board {
     public boolean equals(Object y) {
         if (y == null || getClass() != y.getClass())
             return false;
-        if (this == y) 
+        if (this == y)
             return true;
-        
+
         Board that = (Board) y;
-        if (this.n == that.n) {
-            for (int i = 0; i < this.n; i++) {
-                for (int j = 0; j < this.n; j++) {
-                    if (this.tiles[i][j] != that.tiles[i][j]) 
-                        return false;
-                }
-            }
-            return true;
-        }
-        return false;
-    } 
+        if (this.grid.rows != that.grid.rows || this.grid.cols != that.grid.cols || this.blank != that.blank)
+            return false;
+        if (cells == null)
+            return this.packed == that.packed;
+        return this.hash == that.hash && java.util.Arrays.equals(this.cells, that.cells);
+    }
+
+    public int hashCode() {
+        long k = key();
+        return (int) (k ^ (k >>> 32));
+    }
 
     // all neighboring boards
     public Iterable<Board> neighbors() {
-        
+
         return new Iterable<Board>() {
             @Override
             public Iterator<Board> iterator() {
-                
+
                 return new Iterator<Board>() {
-                    // used to track if we have checked specified positions and if we can check them
-                    private boolean[] dir = {row > 0, row < n-1, col > 0, col < n-1};
-                    
+                    // next direction to check: 0 - tile above, 1 - below, 2 - to the left, 3 - to the right
+                    private int dir = skip(0);
+
+                    private int skip(int d) {
+                        while (d < 4 && !canSlide(d))
+                            d++;
+                        return d;
+                    }
+
                     @Override
                     public boolean hasNext() {
-                        return dir[0] || dir[1] || dir[2] || dir[3];
+                        return dir < 4;
                     }
-                    
+
                     @Override
                     public Board next() {
                         if (!hasNext()) throw new java.util.NoSuchElementException();
-                        
-                        Board temp = new Board(tiles);
-                        if (dir[0]) { // switch with tile right above
-                            temp.move(row-1, col, row, col);
-                            dir[0] = false;
-                        }
-                        else if (dir[1]) { // switch with tile right below
-                            temp.move(row+1, col, row, col);
-                            dir[1] = false;
-                        }
-                        else if (dir[2]) { // switch with tile to the left
-                            temp.move(row, col-1, row, col);
-                            dir[2] = false;
-                        }
-                        else if (dir[3]){ // switch with tile to the right
-                            temp.move(row, col+1, row, col);
-                            dir[3] = false;
-                        }
+
+                        Board temp = slide(dir);
+                        dir = skip(dir + 1);
                         return temp;
                     }
                 };
             }
         };
     }
-    
-    private void move(int i, int j, int k, int h) {
-        int temp = tiles[i][j];
-        tiles[i][j] = tiles[k][h];
-        tiles[k][h] = temp;
-        
-        // remove the manhattan value of original [i][j] element, then add its new manhattan value
-        manhattan -= Math.abs((temp-1) / n - i);
-        manhattan -= Math.abs((temp-1) % n - j);
-        
-        manhattan += Math.abs((temp-1) / n - k);
-        manhattan += Math.abs((temp-1) % n - h);
-
-        // change hamming only if the element was previuosly in correct place or if it is now in place
-        if ((temp-1) == i*n + j)
-            hamming++;
-        else if ((temp-1) == k*n + h)
-            hamming--;
-        
-        // same calculations for the second element, unless it is zero(twin declaration)
-        if (k != row && h != col) {
-            temp = tiles[i][j];
-            manhattan -= Math.abs((temp-1) / n - k);
-            manhattan -= Math.abs((temp-1) % n - h);
-            
-            manhattan += Math.abs((temp-1) / n - i);
-            manhattan += Math.abs((temp-1) % n - j);
-            
-            if ((temp-1) == k*n + h)
-                hamming++;
-            else if ((temp-1) == i*n + j)
-                hamming--;
+
+    // pass every neighboring board to the action, without an iterator in between
+    public void forEachNeighbor(java.util.function.Consumer<? super Board> action) {
+        for (int dir = 0; dir < 4; dir++)
+            if (canSlide(dir)) action.accept(slide(dir));
+    }
+
+    // receives the neighbors of forEachNeighbor() along with the direction the blank took to get there
+    interface Visitor {
+        void visit(Board neighbor, int dir);
+    }
+
+    // visit every neighbor except the one in direction opposite to 'last' (-1 - none is skipped)
+    void forEachNeighbor(int last, Visitor visitor) {
+        for (int dir = 0; dir < 4; dir++)
+            if (dir != (last ^ 1) && canSlide(dir)) visitor.visit(slide(dir), dir);
+    }
+
+    // can the blank switch with its neighbor in direction dir? (0 - up, 1 - down, 2 - left, 3 - right)
+    boolean canSlide(int dir) {
+        return grid.canSlide(blank, dir);
+    }
+
+    // board obtained by switching the blank with its neighbor in direction dir
+    // only one tile moves, so hamming and manhattan are adjusted instead of being recomputed
+    Board slide(int dir) {
+        int q = blank + grid.step[dir];
+        int tile = tileAt(q);
+
+        int h = hamming;
+        if      ((tile-1) == q)     h++; // tile leaves its place
+        else if ((tile-1) == blank) h--; // tile gets to its place
+        int m = manhattan - grid.distance(tile, q) + grid.distance(tile, blank);
+
+        if (cells == null) {
+            long p = packed & ~(0xFL << (q << 2)) | ((long) tile << (blank << 2));
+            return new Board(grid, p, null, 0, q, h, m);
         }
+        int size = grid.size;
+        byte[] c = cells.clone();
+        put(c, size, q, 0);
+        put(c, size, blank, tile);
+        long k = hash ^ mix((long) tile * size + q) ^ mix((long) tile * size + blank);
+        return new Board(grid, 0, c, k, q, h, m);
+    }
+
+    // offset of the neighbor in direction dir, in row-major order
+    int step(int dir) {
+        return grid.step[dir];
+    }
+
+    // shape of the board with its coordinate tables
+    Grid grid() {
+        return grid;
+    }
+
+    // number of cells
+    int size() {
+        return grid.size;
+    }
+
+    // tile at position q (row-major order)
+    int tileAt(int q) {
+        if (cells == null)
+            return (int) (packed >>> (q << 2)) & 0xF;
+        if (width(grid.size) == 1)
+            return cells[q] & 0xFF;
+        return ((cells[2*q] & 0xFF) << 8) | (cells[2*q + 1] & 0xFF);
+    }
+
+    // 64-bit key of the tiles: the packed tiles themselves for up to 16 cells (no collisions possible),
+    // a hash for larger boards (equal boards always share it, different ones - with probability ~2^-64)
+    long key() {
+        return cells == null ? packed : hash;
+    }
+
+    // finalizer of splitmix64, spreads the bits of z over the whole long
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // position of zero (row-major order)
+    int blank() {
+        return blank;
+    }
+
+    // can the goal be reached from this board?
+    // every move swaps the blank with a tile and moves the blank by one cell, so the parity of the
+    // permutation (blank counted as the last tile) always matches the parity of the blank's distance to its goal
+    // (for boards of at least 2 rows and 2 columns that is also enough for the goal to be reachable)
+    boolean solvable() {
+        int size = grid.size;
+        // on a single row or column tiles never pass each other: they have to be in order already
+        if (grid.rows == 1 || grid.cols == 1) {
+            for (int q = 0, next = 1; q < size; q++) {
+                int tile = tileAt(q);
+                if (tile == 0) continue;
+                if (tile != next++) return false;
+            }
+            return true;
+        }
+        boolean[] seen = new boolean[size];
+        int cycles = 0;
+        for (int q = 0; q < size; q++) {
+            if (seen[q]) continue;
+            cycles++;
+            // follow the cycle: the tile at j belongs at goal position tileAt(j) - 1 (blank - at the last one)
+            for (int j = q; !seen[j]; j = tileAt(j) == 0 ? size - 1 : tileAt(j) - 1)
+                seen[j] = true;
+        }
+        return ((size - cycles) & 1) == (grid.distance(0, blank) & 1);
+    }
+
+    // the goal board of dimension n: tiles in order, blank in the last cell
+    static Board goal(int n) {
+        return goal(n, n);
+    }
+
+    // the goal board of the given shape
+    static Board goal(int rows, int cols) {
+        int[][] tiles = new int[rows][cols];
+        for (int q = 0; q < rows*cols - 1; q++)
+            tiles[q / cols][q % cols] = q + 1;
+        return new Board(tiles);
+    }
+
+    // copy tiles into dst in row-major order
+    void copyTiles(int[] dst) {
+        for (int q = 0; q < grid.size; q++)
+            dst[q] = tileAt(q);
+    }
+
+    // tiles in the form accepted by the constructor
+    int[][] tiles() {
+        int[][] tiles = new int[grid.rows][grid.cols];
+        for (int i = 0; i < grid.rows; i++)
+            for (int j = 0; j < grid.cols; j++)
+                tiles[i][j] = tileAt(i*grid.cols + j);
+        return tiles;
+    }
+
+    // bytes used for a single cell of the byte[] encoding of 'size' cells
+    private static int width(int size) {
+        return size <= 256 ? 1 : 2;
+    }
+
+    private static void put(byte[] c, int size, int q, int tile) {
+        if (width(size) == 1)
+            c[q] = (byte) tile;
         else {
-            row = i;
-            col = j;
+            c[2*q] = (byte) (tile >>> 8);
+            c[2*q + 1] = (byte) tile;
+        }
+    }
+
+    // Shape of a board: the row and column of every position and of every tile's goal are worked out once,
+    // so that moves and distances are table lookups instead of divisions
+    static final class Grid {
+        final int rows, cols, size;
+        final int[] row, col;         // coordinates of position q
+        final int[] goalRow, goalCol; // coordinates of the goal of tile t (tile 0 - the blank, in the last cell)
+        final int[] step;             // offset of the neighbor in direction dir
+
+        Grid(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            size = rows * cols;
+            row = new int[size];
+            col = new int[size];
+            goalRow = new int[size];
+            goalCol = new int[size];
+            for (int q = 0; q < size; q++) {
+                row[q] = q / cols;
+                col[q] = q % cols;
+                int tile = (q + 1) % size;
+                goalRow[tile] = row[q];
+                goalCol[tile] = col[q];
+            }
+            step = new int[] { -cols, cols, -1, 1 };
+        }
+
+        // manhattan distance from position q to the goal of the tile
+        int distance(int tile, int q) {
+            return Math.abs(goalRow[tile] - row[q]) + Math.abs(goalCol[tile] - col[q]);
+        }
+
+        // manhattan distance between 2 positions
+        int between(int from, int to) {
+            return Math.abs(row[from] - row[to]) + Math.abs(col[from] - col[to]);
+        }
+
+        boolean canSlide(int q, int dir) {
+            switch (dir) {
+                case 0:  return row[q] > 0;
+                case 1:  return row[q] < rows - 1;
+                case 2:  return col[q] > 0;
+                default: return col[q] < cols - 1;
+            }
         }
     }
 
     // a board that is obtained by exchanging any pair of tiles
     public Board twin() {
-        /* find the first pair of non-zero value(horizontal for simplicity),
+        /* find the first pair of non-zero value (in row-major order, not necessarily next to each other),
          * create a new board, swap that pair and return */
         if (twin == null) {
-            int point = 0;
-            while (point == row*n + col || point % n == n-1 || point + 1 == row*n + col)
-                point++;
+            if (grid.size - 1 < 2) throw new IllegalStateException("no pair of tiles to exchange");
+            int point = blank == 0 ? 1 : 0;
+            int other = point + 1 == blank ? point + 2 : point + 1;
+            int[][] tiles = tiles();
+            int i = grid.row[point], j = grid.col[point];
+            int i2 = grid.row[other], j2 = grid.col[other];
+            int temp = tiles[i][j];
+            tiles[i][j] = tiles[i2][j2];
+            tiles[i2][j2] = temp;
             twin = new Board(tiles);
-            twin.move(point / n, point % n, (point+1) / n, (point+1) % n);
         }
         return twin;
     }
@@ -0,0 +1,83 @@
+// Minimum-oriented priority queue for small non-negative integer priorities, used by Solver in place of MinPQ
+// Items are kept in LIFO stacks indexed by f and then by h (h <= f), the least f goes first and,
+// among equal f, the least h (the one closest to the goal). Insert and delMin are O(1) amortized
+
+class BucketQueue<Item> {
+    private Object[][][] stacks; // stacks[f][h] - items of that priority, or null if there were none yet
+    private int[][] sizes;       // sizes[f][h] - number of items in stacks[f][h]
+    private int[] count;         // count[f] - number of items with that f
+    private int[] minH;          // no stack of stacks[f] below minH[f] has items
+    private int minF;            // no stack of stacks below minF has items
+    private int size;
+
+    public BucketQueue() {
+        stacks = new Object[16][][];
+        sizes = new int[16][];
+        count = new int[16];
+        minH = new int[16];
+        minF = 0;
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void insert(Item item, int f, int h) {
+        if (h < 0 || h > f) throw new IllegalArgumentException();
+        if (f >= stacks.length) resize(Math.max(2 * stacks.length, f + 1));
+        if (stacks[f] == null) {
+            stacks[f] = new Object[f + 1][];
+            sizes[f] = new int[f + 1];
+            minH[f] = f + 1;
+        }
+
+        Object[] stack = stacks[f][h];
+        int s = sizes[f][h];
+        if (stack == null)
+            stack = stacks[f][h] = new Object[4];
+        else if (s == stack.length)
+            stack = stacks[f][h] = java.util.Arrays.copyOf(stack, 2 * s);
+        stack[s] = item;
+        sizes[f][h] = s + 1;
+
+        count[f]++;
+        size++;
+        if (h < minH[f]) minH[f] = h;
+        if (f < minF)    minF = f;
+    }
+
+    // f of the item delMin() would return
+    public int minPriority() {
+        if (isEmpty()) throw new java.util.NoSuchElementException();
+        while (count[minF] == 0)
+            minF++;
+        return minF;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Item delMin() {
+        int f = minPriority();
+        while (sizes[f][minH[f]] == 0)
+            minH[f]++;
+        int h = minH[f];
+
+        int s = --sizes[f][h];
+        Item item = (Item) stacks[f][h][s];
+        stacks[f][h][s] = null;
+        count[f]--;
+        size--;
+        return item;
+    }
+
+    private void resize(int capacity) {
+        stacks = java.util.Arrays.copyOf(stacks, capacity);
+        sizes = java.util.Arrays.copyOf(sizes, capacity);
+        count = java.util.Arrays.copyOf(count, capacity);
+        minH = java.util.Arrays.copyOf(minH, capacity);
+    }
+}
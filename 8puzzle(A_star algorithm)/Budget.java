@@ -0,0 +1,34 @@
+import java.util.concurrent.TimeUnit;
+
+// Limits on a single search: nodes it may expand and time it may run for, 0 meaning no limit
+// A search that runs out of budget stops without a solution (see Solver.budgetExceeded())
+
+public class Budget {
+    public static final Budget UNLIMITED = new Budget(0, 0);
+
+    private final long maxNodes;
+    private final long maxMillis;
+    private final long maxNanos; // maxMillis on the clock of System.nanoTime(), Long.MAX_VALUE if it doesn't fit
+
+    public Budget(long maxNodes, long maxMillis) {
+        if (maxNodes < 0 || maxMillis < 0) throw new IllegalArgumentException();
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+        this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+    }
+
+    public long maxNodes() {
+        return maxNodes;
+    }
+
+    public long maxMillis() {
+        return maxMillis;
+    }
+
+    // is the budget used up by a search that expanded 'nodes' nodes since System.nanoTime() was 'start'?
+    // the clock is only looked at every 1024 nodes, it is too slow for every one of them
+    boolean exceeded(long nodes, long start) {
+        if (maxNodes > 0 && nodes >= maxNodes) return true;
+        return maxMillis > 0 && (nodes & 1023) == 0 && System.nanoTime() - start >= maxNanos;
+    }
+}
@@ -0,0 +1,8 @@
+// Lower bound on the number of moves needed to solve a board, used by Solver to order the search
+// Implementations are shared between searches (and threads), so estimate() must not change the object
+
+public interface Heuristic {
+    // tiles of a board with n columns in row-major order (n-by-n, or tiles.length / n rows), 0 being the blank
+    // the estimate must never exceed the actual number of moves left (otherwise solutions aren't shortest)
+    int estimate(int[] tiles, int n);
+}
@@ -0,0 +1,90 @@
+// Iterative deepening A* used by Solver in Mode.IDA_STAR
+// Runs depth-first searches bounded by (moves + heuristic), raising the bound after every failed pass.
+// Only one board is kept: moves are made and undone in place, so memory is linear in solution depth
+
+class IDAStar extends Search {
+    private static final int FOUND = -1;
+    private static final int ABORTED = -2; // budget ran out
+
+    private final Board.Grid grid; // coordinate tables of the board's shape
+    private final int[] tiles; // the only board of the search, in row-major order
+    private int blank;         // position of zero
+    private int manhattan;     // kept up to date by every move
+    private byte[] made;       // directions of the moves made so far (0 - up, 1 - down, 2 - left, 3 - right)
+    private final Budget budget;
+    private final SearchMetrics metrics;
+    private final boolean counting;
+
+    // initial board has to be solvable, otherwise the search never stops (unless the budget is limited)
+    public IDAStar(Board initial, Heuristic heuristic, Budget budget, SearchMetrics metrics) {
+        super(heuristic, 0); // its own tiles are estimated, never a Board: no scratch
+        grid = initial.grid();
+        tiles = new int[grid.size];
+        initial.copyTiles(tiles);
+        blank = initial.blank();
+        manhattan = initial.manhattan();
+        this.budget = budget;
+        this.metrics = metrics;
+        counting = metrics.counting;
+
+        int bound = estimate();
+        while (true) {
+            // moves never exceed the bound, since the heuristic is never negative
+            made = new byte[bound + 1];
+            int t = search(0, bound, -1);
+            if (t == FOUND) {
+                path = java.util.Arrays.copyOf(made, moves);
+                break;
+            }
+            if (t == ABORTED) {
+                moves = -1;
+                break;
+            }
+            bound = t;
+        }
+    }
+
+    // depth-first search from the current board, returns FOUND, ABORTED or the smallest cost that exceeded the bound
+    private int search(int g, int bound, int last) {
+        int f = g + estimate();
+        if (f > bound) return f;
+        if (manhattan == 0) { // every tile is in its place
+            moves = g;
+            return FOUND;
+        }
+        if (!metrics.expand(budget)) return ABORTED;
+        if (counting) metrics.open(g + 1);
+
+        int min = Integer.MAX_VALUE;
+        for (int dir = 0; dir < 4; dir++) {
+            // never undo the previous move
+            if (dir == (last ^ 1) || !canSlide(dir)) continue;
+
+            slide(dir);
+            if (counting) metrics.generated++;
+            made[g] = (byte) dir;
+            int t = search(g + 1, bound, dir);
+            if (t == FOUND || t == ABORTED) return t;
+            slide(dir ^ 1);
+            if (t < min) min = t;
+        }
+        return min;
+    }
+
+    private int estimate() {
+        return heuristic == null ? manhattan : heuristic.estimate(tiles, grid.cols);
+    }
+
+    private boolean canSlide(int dir) {
+        return grid.canSlide(blank, dir);
+    }
+
+    // switch the blank with its neighbor in direction dir, the opposite direction (dir ^ 1) undoes it
+    private void slide(int dir) {
+        int q = blank + grid.step[dir];
+        manhattan += grid.distance(tiles[q], blank) - grid.distance(tiles[q], q);
+        tiles[blank] = tiles[q];
+        tiles[q] = 0;
+        blank = q;
+    }
+}
@@ -0,0 +1,64 @@
+// Manhattan distance plus linear conflicts
+// Two tiles that are in their goal row (column) but in reversed order have to get around each other,
+// which costs at least 2 moves on top of their manhattan distances
+
+public class LinearConflict implements Heuristic {
+    // scratch of every thread: the line (scratch[0]) and the lengths of its increasing subsequences (scratch[1]),
+    // grown to the longest line seen, so estimate() allocates nothing once a thread has made a first one
+    private static final ThreadLocal<int[][]> SCRATCH = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[2][0];
+        }
+    };
+
+    public int estimate(int[] tiles, int n) {
+        int cols = n, rows = tiles.length / n;
+        int h = 0;
+        for (int q = 0; q < tiles.length; q++) {
+            int goal = tiles[q] - 1;
+            if (goal >= 0)
+                h += Math.abs(goal / cols - q / cols) + Math.abs(goal % cols - q % cols);
+        }
+
+        // goal coordinates of tiles that are in their goal line, in the order they are met in that line
+        int[][] scratch = SCRATCH.get();
+        if (scratch[0].length < Math.max(rows, cols)) {
+            scratch[0] = new int[Math.max(rows, cols)];
+            scratch[1] = new int[Math.max(rows, cols)];
+        }
+        int[] line = scratch[0], len = scratch[1];
+        for (int i = 0; i < rows; i++) {
+            int k = 0;
+            for (int j = 0; j < cols; j++) { // row i
+                int goal = tiles[i*cols + j] - 1;
+                if (goal >= 0 && goal / cols == i) line[k++] = goal % cols;
+            }
+            h += 2 * (k - increasing(line, len, k));
+        }
+        for (int i = 0; i < cols; i++) {
+            int k = 0;
+            for (int j = 0; j < rows; j++) { // column i
+                int goal = tiles[j*cols + i] - 1;
+                if (goal >= 0 && goal % cols == i) line[k++] = goal / cols;
+            }
+            h += 2 * (k - increasing(line, len, k));
+        }
+        return h;
+    }
+
+    // length of the longest increasing subsequence of a[0..k-1] - tiles that can stay in line,
+    // every other tile has to step out of it; len[0..k-1] is scratch
+    private static int increasing(int[] a, int[] len, int k) {
+        if (k < 2) return k;
+        int best = 0;
+        for (int i = 0; i < k; i++) {
+            len[i] = 1;
+            for (int j = 0; j < i; j++)
+                if (a[j] < a[i] && len[j] + 1 > len[i])
+                    len[i] = len[j] + 1;
+            if (len[i] > best) best = len[i];
+        }
+        return best;
+    }
+}
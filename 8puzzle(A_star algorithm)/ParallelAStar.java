@@ -0,0 +1,272 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Hash distributed A* (HDA*) used by Solver in Mode.PARALLEL
+// Every board is owned by one worker thread, chosen by the hash of its key. A worker keeps the open list and
+// the table of fewest moves for its own boards only, so neither needs locking. Neighbors that belong to
+// other workers are sent to their lock-free mailboxes.
+// The first solution found is not necessarily the shortest one, it only bounds the search: workers keep going
+// until no node with (moves + heuristic) below the best solution is left anywhere, nor is on its way.
+
+class ParallelAStar extends Search {
+    private final int threads;
+    private final Worker[] workers;
+    private final Budget budget;
+    private final long start;          // System.nanoTime() when the search started
+    private final SearchMetrics metrics;
+    private final boolean counting;
+
+    // busy workers + messages sent but not yet put in an open list; the search is over once it drops to 0
+    private final AtomicLong work;
+    private final AtomicReference<Node> best; // goal node of the shortest solution found so far
+    private volatile boolean done;
+    private volatile boolean aborted;
+    private final AtomicReference<Throwable> failure;
+    // queue size of every worker, published without a fence; worker 0 adds them up now and then and keeps the
+    // largest total (its own field, read by others only after the workers are joined)
+    private final AtomicIntegerArray openSizes;
+    private long peakOpen;
+
+    // initial board has to be solvable
+    public ParallelAStar(Board initial, Heuristic heuristic, Budget budget, SearchMetrics metrics, int threads) {
+        super(heuristic, initial.size());
+        if (threads < 1) throw new IllegalArgumentException();
+        this.threads = threads;
+        this.budget = budget;
+        this.metrics = metrics;
+        counting = metrics.counting;
+        start = metrics.startNanos;
+        work = new AtomicLong(threads + 1); // every worker starts busy, plus the initial board
+        best = new AtomicReference<Node>();
+        failure = new AtomicReference<Throwable>();
+        openSizes = new AtomicIntegerArray(threads);
+
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++)
+            workers[i] = new Worker(i, initial.size());
+        Node root = new Node(initial, 0, estimate(initial), -1, null);
+        workers[owner(initial)].mailbox.send(root);
+
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = new Thread(workers[i], "hda-" + i);
+            running[i].start();
+        }
+        for (Thread t : running) {
+            try {
+                t.join();
+            }
+            catch (InterruptedException e) {
+                done = true;
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        if (failure.get() != null) throw new IllegalStateException(failure.get());
+        for (Worker w : workers)
+            metrics.add(w.part);
+        metrics.open(peakOpen);
+
+        if (aborted) {
+            moves = -1;
+            return;
+        }
+        solved(best.get());
+    }
+
+    // progress of the whole search, counters of other workers are read while they change (only roughly right)
+    private void report() {
+        SearchMetrics snapshot = new SearchMetrics();
+        snapshot.startNanos = start;
+        for (Worker w : workers)
+            snapshot.add(w.part);
+        snapshot.open(peakOpen);
+        metrics.progress.report(snapshot);
+    }
+
+    // total of the queues as last published by the workers (called by worker 0 only)
+    private void sample() {
+        long total = 0;
+        for (int i = 0; i < threads; i++)
+            total += openSizes.get(i);
+        if (total > peakOpen) peakOpen = total;
+    }
+
+    // worker that owns the board (high bits of the mixed key, the low ones pick slots of the worker's table)
+    private int owner(Board board) {
+        return (int) ((Board.mix(board.key()) >>> 40) % threads);
+    }
+
+    // cost of the best solution found so far
+    private int bound() {
+        Node goal = best.get();
+        return goal == null ? Integer.MAX_VALUE : goal.moves;
+    }
+
+    private class Worker implements Runnable {
+        private final int id;
+        private final Mailbox mailbox = new Mailbox();
+        private final BucketQueue<Node> open = new BucketQueue<Node>();
+        private final TranspositionTable seen = new TranspositionTable();
+        private final int[] scratch;
+        private final Node[] outgoing = new Node[4];
+        private final SearchMetrics part = new SearchMetrics(); // this worker's counters
+        private boolean idle = false;
+        private int ticks;      // turns of the loop, worker 0 samples the total of the queues every 64 of them
+
+        Worker(int id, int size) {
+            this.id = id;
+            scratch = new int[size];
+        }
+
+        public void run() {
+            try {
+                while (!done) {
+                    receive();
+                    if (id == 0 && counting && (++ticks & 63) == 0) sample();
+                    Node cur = next();
+                    if (cur == null) {
+                        // nothing useful to do until something arrives
+                        if (!idle) {
+                            idle = true;
+                            if (work.decrementAndGet() == 0) done = true;
+                        }
+                        Thread.yield();
+                        continue;
+                    }
+                    if (cur.board.isGoal()) {
+                        offer(cur);
+                        continue;
+                    }
+                    // node budget is shared out evenly between the workers, the first one reports progress
+                    long expanded = ++part.expanded * threads;
+                    if (id == 0 && expanded >= metrics.nextReport) {
+                        metrics.nextReport += metrics.interval;
+                        report();
+                    }
+                    if (budget.exceeded(expanded, start)) {
+                        aborted = true;
+                        done = true;
+                        return;
+                    }
+                    expand(cur);
+                }
+            }
+            catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                done = true;
+            }
+        }
+
+        // move everything from the mailbox to the open list
+        private void receive() {
+            Node msg = mailbox.receive();
+            if (msg == null) return;
+            if (idle) { // counted as busy before the messages stop being counted
+                idle = false;
+                work.incrementAndGet();
+            }
+            int received = 0;
+            for (; msg != null; msg = mailbox.receive()) {
+                received++;
+                if (seen.improve(msg.board.key(), msg.moves)) push(msg);
+                else if (counting)                            part.duplicates++;
+            }
+            work.addAndGet(-received);
+        }
+
+        // best node that can still lead to a shorter solution, null if there is none
+        private Node next() {
+            int bound = bound();
+            while (!open.isEmpty()) {
+                Node cur = open.delMin();
+                if (cur.moves > seen.get(cur.board.key())) { // reached in fewer moves later on
+                    if (counting) part.duplicates++;
+                    continue;
+                }
+                if (cur.moves + cur.h >= bound) continue;          // can't beat the best solution
+                return cur;
+            }
+            return null;
+        }
+
+        private void expand(Node cur) {
+            int bound = bound(), sent = 0;
+            for (int dir = 0; dir < 4; dir++) {
+                if (dir == (cur.dir ^ 1) || !cur.board.canSlide(dir)) continue;
+                Board neighbor = cur.board.slide(dir);
+                Node node = new Node(neighbor, cur.moves + 1, estimate(neighbor, scratch), dir, cur);
+                if (counting) part.generated++;
+                if (node.moves + node.h >= bound) continue;
+
+                if (owner(neighbor) == id) {
+                    if (seen.improve(neighbor.key(), node.moves)) push(node);
+                    else if (counting)                            part.duplicates++;
+                }
+                else outgoing[sent++] = node;
+            }
+            // messages are counted before they are sent, so that the count can't drop to 0 while they travel
+            if (sent == 0) return;
+            work.addAndGet(sent);
+            for (int i = 0; i < sent; i++) {
+                workers[owner(outgoing[i].board)].mailbox.send(outgoing[i]);
+                outgoing[i] = null;
+            }
+        }
+
+        private void push(Node node) {
+            open.insert(node, node.moves + node.h, node.h);
+            if (!counting) return;
+            part.open(open.size());
+            openSizes.lazySet(id, open.size());
+        }
+
+        // make the goal node the best solution, unless a shorter one is already known
+        private void offer(Node goal) {
+            Node cur = best.get();
+            while ((cur == null || goal.moves < cur.moves) && !best.compareAndSet(cur, goal))
+                cur = best.get();
+        }
+    }
+
+    // search node, also a message of a mailbox
+    private static class Node extends Search.Node {
+        volatile Node next; // next message in the mailbox
+
+        Node(Board board, int moves, int h, int dir, Node prev) {
+            super(board, moves, h, dir, prev);
+        }
+    }
+
+    // lock-free queue for many senders and a single receiver (Vyukov's intrusive MPSC queue)
+    // the last received node stays in the queue as its head, only its 'next' link is used by the queue
+    private static class Mailbox {
+        private final AtomicReference<Node> tail;
+        private Node head;
+
+        Mailbox() {
+            head = new Node(null, 0, 0, -1, null);
+            tail = new AtomicReference<Node>(head);
+        }
+
+        // any thread
+        void send(Node node) {
+            node.next = null;
+            Node prev = tail.getAndSet(node);
+            prev.next = node;
+        }
+
+        // owner only, null if nothing has arrived (or a sender is half way through)
+        // the old head is unlinked, or every message received would stay reachable from the first one;
+        // with a next node it is no longer the tail, so no sender writes to it again
+        Node receive() {
+            Node next = head.next;
+            if (next == null) return null;
+            Node old = head;
+            head = next;
+            old.next = null;
+            return next;
+        }
+    }
+}
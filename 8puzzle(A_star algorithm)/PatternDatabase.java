@@ -0,0 +1,311 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Disjoint additive pattern database heuristic
+// Tiles are split into groups (patterns). For every placement of a pattern's tiles the table keeps the fewest
+// moves of those tiles needed to bring them home, other tiles being ignored. Since every move moves a tile of
+// exactly one pattern, table values of different patterns can be added up and stay a lower bound.
+// The sum is combined with linear conflict (not additive with it) by taking the larger of the two.
+//
+// File layout: int MAGIC, int n, int number of patterns, for every pattern - int size followed by its tiles,
+// then all the tables one after another, one byte per placement
+
+public class PatternDatabase implements Heuristic {
+    private static final int MAGIC = 0x50444231; // "PDB1"
+    // positions of the pattern tiles, a buffer for every thread so that estimate() doesn't allocate
+    private static final ThreadLocal<int[]> WHERE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[0];
+        }
+    };
+
+    private final int n;
+    private final int[][] patterns;
+    private final int[] offset;        // start of every pattern's table in data
+    private final int[] slot;          // place of every tile among the tiles of all patterns put one after another
+    private final int size;            // total size of the tables
+    private final ByteBuffer data;     // either built in memory or mapped from a file
+    private final LinearConflict conflict = new LinearConflict();
+
+    private PatternDatabase(int n, int[][] patterns, ByteBuffer data) {
+        this.n = n;
+        this.patterns = patterns;
+        this.data = data;
+
+        slot = new int[n*n];
+        java.util.Arrays.fill(slot, -1);
+        offset = new int[patterns.length];
+        int total = 0, tiles = 0;
+        for (int p = 0; p < patterns.length; p++) {
+            offset[p] = total;
+            total += (int) placements(n*n, patterns[p].length);
+            for (int tile : patterns[p])
+                slot[tile] = tiles++;
+        }
+        size = total;
+        if (data.limit() < size)
+            throw new IllegalArgumentException("pattern database is truncated");
+    }
+
+    // 4x4 - the 6-6-3 split, 3x3 - 4-4
+    public static int[][] defaultPatterns(int n) {
+        if (n == 3) return new int[][] { {1, 2, 3, 4}, {5, 6, 7, 8} };
+        if (n == 4) return new int[][] { {1, 5, 6, 9, 10, 13}, {7, 8, 11, 12, 14, 15}, {2, 3, 4} };
+        throw new IllegalArgumentException("no default patterns for n = " + n);
+    }
+
+    // pattern database from a file if it exists, otherwise the default one is built and saved there
+    public static PatternDatabase open(File file, int n) throws IOException {
+        if (file.exists()) {
+            PatternDatabase pdb = load(file);
+            if (pdb.n != n) throw new IllegalArgumentException(file + " is made for n = " + pdb.n);
+            return pdb;
+        }
+        PatternDatabase pdb = build(n, defaultPatterns(n));
+        pdb.save(file);
+        return pdb;
+    }
+
+    // compute the tables of the given disjoint patterns of an n-by-n board
+    public static PatternDatabase build(int n, int[][] patterns) {
+        byte[] tables = new byte[tablesSize(n, patterns)];
+        int start = 0;
+        for (int[] pattern : patterns) {
+            fill(n, pattern, tables, start);
+            start += (int) placements(n*n, pattern.length);
+        }
+        return new PatternDatabase(n, copy(patterns), ByteBuffer.wrap(tables));
+    }
+
+    // map a saved pattern database into memory (tables are paged in by the OS on demand)
+    public static PatternDatabase load(File file) throws IOException {
+        ByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 12 || buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException(file + " is not a pattern database");
+
+        // the header is checked as build() checks its arguments before anything is made of it
+        int n = buffer.getInt(), count = buffer.getInt();
+        if (n < 2 || n > 8 || count < 0 || count >= n*n)
+            throw new IllegalArgumentException(file + " is not a pattern database");
+        int[][] patterns = new int[count][];
+        for (int p = 0; p < patterns.length; p++) {
+            int k = buffer.remaining() < 4 ? -1 : buffer.getInt();
+            if (k < 0 || k >= n*n || buffer.remaining() < 4L * k)
+                throw new IllegalArgumentException(file + " is not a pattern database");
+            patterns[p] = new int[k];
+            for (int i = 0; i < k; i++)
+                patterns[p][i] = buffer.getInt();
+        }
+        try {
+            tablesSize(n, patterns);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(file + " is not a pattern database", e);
+        }
+        return new PatternDatabase(n, patterns, buffer.slice());
+    }
+
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeInt(patterns.length);
+            for (int[] pattern : patterns) {
+                out.writeInt(pattern.length);
+                for (int tile : pattern)
+                    out.writeInt(tile);
+            }
+            for (int i = 0; i < size; i++)
+                out.writeByte(data.get(i));
+        }
+    }
+
+    // size of the tables of the given patterns of an n-by-n board; they have to be disjoint, of tiles 1..n*n-1
+    private static int tablesSize(int n, int[][] patterns) {
+        if (n < 2 || n > 8) throw new IllegalArgumentException();
+        boolean[] used = new boolean[n*n];
+        long size = 0;
+        for (int[] pattern : patterns) {
+            for (int tile : pattern) {
+                if (tile < 1 || tile >= n*n || used[tile]) throw new IllegalArgumentException();
+                used[tile] = true;
+            }
+            size += placements(n*n, pattern.length);
+        }
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("patterns are too large");
+        return (int) size;
+    }
+
+    // board dimension the tables are made for
+    public int dimension() {
+        return n;
+    }
+
+    public int estimate(int[] tiles, int n) {
+        if (n != this.n || tiles.length != n*n) throw new IllegalArgumentException("tables are made for " + this.n + "x" + this.n);
+
+        // positions of every pattern's tiles, in the pattern's order (every slot gets written)
+        int[] where = WHERE.get();
+        if (where.length < n*n) {
+            where = new int[n*n];
+            WHERE.set(where);
+        }
+        for (int q = 0; q < n*n; q++) {
+            int tile = tiles[q];
+            if (tile != 0 && slot[tile] >= 0) where[slot[tile]] = q;
+        }
+
+        int h = 0, from = 0;
+        for (int p = 0; p < patterns.length; p++) {
+            int k = patterns[p].length;
+            h += data.get(offset[p] + (int) rank(where, from, k, n*n)) & 0xFF;
+            from += k;
+        }
+        return Math.max(h, conflict.estimate(tiles, n));
+    }
+
+    /* Breadth-first search over placements of the pattern's tiles together with the blank, starting at the goal.
+     * Moves of the blank over cells free of pattern tiles cost nothing, so the whole region of cells the blank
+     * can reach is visited at once, and only moves of pattern tiles lead to the next level of the search */
+    private static void fill(int n, int[] pattern, byte[] tables, int start) {
+        int cells = n*n, k = pattern.length;
+        java.util.Arrays.fill(tables, start, start + (int) placements(cells, k), (byte) -1);
+
+        long[] visited = new long[(int) ((placements(cells, k + 1) + 63) >>> 6)];
+        int[] pos = new int[k + 1];
+        for (int i = 0; i < k; i++)
+            pos[i] = pattern[i] - 1;
+        pos[k] = cells - 1;
+
+        IntList level = new IntList(), next = new IntList();
+        level.add((int) rank(pos, 0, k + 1, cells));
+        int[] stack = new int[cells];
+
+        for (int cost = 0; level.size > 0; cost++) {
+            for (int s = 0; s < level.size; s++) {
+                int state = level.items[s];
+                if ((visited[state >>> 6] & (1L << state)) != 0) continue;
+
+                unrank(state, pos, k + 1, cells);
+                long tilesMask = 0;
+                for (int i = 0; i < k; i++)
+                    tilesMask |= 1L << pos[i];
+                int placement = (int) rank(pos, 0, k, cells);
+                int index = start + placement;
+                if (tables[index] == -1) tables[index] = (byte) cost;
+
+                // flood the blank's region
+                long region = 1L << pos[k];
+                int top = 0;
+                stack[top++] = pos[k];
+                while (top > 0) {
+                    int blank = stack[--top];
+                    int sub = placement * (cells - k) + blank - Long.bitCount(tilesMask & ((1L << blank) - 1));
+                    visited[sub >>> 6] |= 1L << sub;
+
+                    for (int dir = 0; dir < 4; dir++) {
+                        int q = neighbor(n, blank, dir);
+                        if (q < 0) continue;
+                        if ((tilesMask & (1L << q)) != 0) {
+                            // the pattern tile at q moves to the blank
+                            int i = 0;
+                            while (pos[i] != q) i++;
+                            pos[i] = blank;
+                            pos[k] = q;
+                            int moved = (int) rank(pos, 0, k + 1, cells);
+                            if ((visited[moved >>> 6] & (1L << moved)) == 0) next.add(moved);
+                            pos[i] = q;
+                        }
+                        else if ((region & (1L << q)) == 0) {
+                            region |= 1L << q;
+                            stack[top++] = q;
+                        }
+                    }
+                }
+            }
+            IntList temp = level;
+            level = next;
+            next = temp;
+            next.size = 0;
+        }
+    }
+
+    // neighbor of cell q in direction dir (0 - up, 1 - down, 2 - left, 3 - right), -1 if there is none
+    private static int neighbor(int n, int q, int dir) {
+        switch (dir) {
+            case 0:  return q >= n ? q - n : -1;
+            case 1:  return q < n*n - n ? q + n : -1;
+            case 2:  return q % n > 0 ? q - 1 : -1;
+            default: return q % n < n-1 ? q + 1 : -1;
+        }
+    }
+
+    // number of ways to put k distinct tiles into 'cells' cells; past Integer.MAX_VALUE it is only some larger
+    // number, so that no pattern of up to 63 tiles overflows it
+    private static long placements(int cells, int k) {
+        long count = 1;
+        for (int i = 0; i < k && count <= Integer.MAX_VALUE; i++)
+            count *= cells - i;
+        return count;
+    }
+
+    // index of the placement a[from..from+k-1] among all placements of k tiles, in 0..placements(cells, k)-1
+    // every cell is counted among the cells left free by the previous tiles
+    private static long rank(int[] a, int from, int k, int cells) {
+        long used = 0, r = 0;
+        for (int i = 0; i < k; i++) {
+            int q = a[from + i];
+            r = r * (cells - i) + q - Long.bitCount(used & ((1L << q) - 1));
+            used |= 1L << q;
+        }
+        return r;
+    }
+
+    // inverse of rank(), fills a[0..k-1]
+    private static void unrank(long r, int[] a, int k, int cells) {
+        for (int i = k-1; i >= 0; i--) {
+            a[i] = (int) (r % (cells - i));
+            r /= cells - i;
+        }
+        long used = 0;
+        for (int i = 0; i < k; i++) {
+            int q = -1;
+            for (int free = a[i]; free >= 0; free--) { // a[i]-th cell that is not used yet
+                q++;
+                while ((used & (1L << q)) != 0) q++;
+            }
+            a[i] = q;
+            used |= 1L << q;
+        }
+    }
+
+    private static int[][] copy(int[][] patterns) {
+        int[][] c = new int[patterns.length][];
+        for (int p = 0; p < patterns.length; p++)
+            c[p] = patterns[p].clone();
+        return c;
+    }
+
+    // growing array of ints, the levels of the search can have millions of states
+    private static class IntList {
+        int[] items = new int[16];
+        int size = 0;
+
+        void add(int x) {
+            if (size == items.length)
+                items = java.util.Arrays.copyOf(items, 2 * size);
+            items[size++] = x;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// What the search engines of Solver have in common: the heuristic, the search node the solution is traced back
+// from, and the solution itself. Solver's own A* uses it for the heuristic and the nodes only
+
+class Search {
+    final Heuristic heuristic; // null - manhattan distance kept by the boards themselves
+    private final int[] scratch;
+
+    byte[] path;               // the solution, null while there is none
+    int moves;                 // -1 if the budget ran out first
+
+    Search(Heuristic heuristic, int size) {
+        this.heuristic = heuristic;
+        scratch = new int[size];
+    }
+
+    // lower bound on the moves left to solve the board (the tiles are copied to scratch, one thread at a time)
+    int estimate(Board board) {
+        return estimate(board, scratch);
+    }
+
+    // same, with a scratch array of the caller's own (a thread of a parallel search)
+    int estimate(Board board, int[] scratch) {
+        if (heuristic == null) return board.manhattan();
+        board.copyTiles(scratch);
+        return heuristic.estimate(scratch, board.cols());
+    }
+
+    // the shortest solution found ends at the goal node
+    void solved(Node goal) {
+        moves = goal.moves;
+        path = goal.path();
+    }
+
+    // number of moves of the solution, -1 if the budget ran out first
+    public int moves() {
+        return moves;
+    }
+
+    // directions of the moves of the solution (0 - up, 1 - down, 2 - left, 3 - right)
+    public byte[] path() {
+        return path == null ? new byte[0] : path.clone();
+    }
+
+    // 'prev' is the node of the previous board (null for the first one), to trace the solution back
+    static class Node {
+        final Board board;
+        final int moves;
+        final int h;      // caching heuristic value
+        final int dir;    // direction of the move that led to this board, -1 for the first one
+        final Node prev;
+
+        Node(Board board, int moves, int h, int dir, Node prev) {
+            this.board = board;
+            this.moves = moves;
+            this.h = h;
+            this.dir = dir;
+            this.prev = prev;
+        }
+
+        // directions of the moves from the first node to this one
+        byte[] path() {
+            byte[] path = new byte[moves];
+            for (Node cur = this; cur.prev != null; cur = cur.prev)
+                path[cur.moves - 1] = (byte) cur.dir;
+            return path;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// Counters of a single search, filled in by Solver and its engines (see Solver.metrics())
+// Counting costs a few field increments per node. Without a progress callback the check for a report
+// is a single comparison against Long.MAX_VALUE. Metrics made by off() count nothing but the expanded nodes
+// (the budget needs them) and the time of every phase: the searches check that once and skip the rest
+
+public class SearchMetrics {
+    // called by the searching thread every 'interval' expanded nodes, long solves can be watched through it
+    public interface Progress {
+        void report(SearchMetrics metrics);
+    }
+
+    final Progress progress;
+    final long interval;
+    final boolean counting;  // false - generated, duplicates and peakOpen stay 0
+    long nextReport; // expanded count at which progress is reported next
+
+    long expanded;   // nodes whose neighbors were generated
+    long generated;  // neighbors generated
+    long duplicates; // neighbors (or queued nodes) dropped since their board was reached in as few moves
+    long peakOpen;   // most nodes kept at once: queue size (sampled total of the workers' queues for the parallel
+                     // search), or search depth for iterative deepening
+    long startNanos; // System.nanoTime() when the search started
+    long checkNanos, searchNanos, solutionNanos; // time spent on solvability check, search and solution
+
+    public SearchMetrics() {
+        this(null, 0);
+    }
+
+    public SearchMetrics(Progress progress, long interval) {
+        this(progress, interval, true);
+    }
+
+    private SearchMetrics(Progress progress, long interval, boolean counting) {
+        if (progress != null && interval < 1) throw new IllegalArgumentException();
+        this.progress = progress;
+        this.interval = interval;
+        this.counting = counting;
+        nextReport = progress == null ? Long.MAX_VALUE : interval;
+        startNanos = System.nanoTime();
+    }
+
+    // metrics of a search that isn't watched: only the expanded nodes and the times are kept
+    public static SearchMetrics off() {
+        return new SearchMetrics(null, 0, false);
+    }
+
+    // count an expanded node, returns false once the budget is used up
+    boolean expand(Budget budget) {
+        if (++expanded >= nextReport) {
+            nextReport += interval;
+            progress.report(this);
+        }
+        return !budget.exceeded(expanded, startNanos);
+    }
+
+    void open(long size) {
+        if (size > peakOpen) peakOpen = size;
+    }
+
+    // add up counters of a part of the search (a worker of the parallel one). Peaks are not added up: workers
+    // reach theirs at different times, the parallel search samples the total of its queues itself
+    void add(SearchMetrics part) {
+        expanded += part.expanded;
+        generated += part.generated;
+        duplicates += part.duplicates;
+        open(part.peakOpen);
+    }
+
+    public long expanded() {
+        return expanded;
+    }
+
+    public long generated() {
+        return generated;
+    }
+
+    public long duplicates() {
+        return duplicates;
+    }
+
+    public long peakOpen() {
+        return peakOpen;
+    }
+
+    // time since the search started
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    public double checkMillis() {
+        return checkNanos / 1e6;
+    }
+
+    public double searchMillis() {
+        return searchNanos / 1e6;
+    }
+
+    public double solutionMillis() {
+        return solutionNanos / 1e6;
+    }
+
+    public String toString() {
+        return "expanded " + expanded + ", generated " + generated + ", duplicates " + duplicates
+            + ", peak open " + peakOpen + ", check " + checkMillis() + " ms, search " + searchMillis()
+            + " ms, solution " + solutionMillis() + " ms";
+    }
+}
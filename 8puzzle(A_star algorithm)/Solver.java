@@ -1,6 +1,4 @@
-import java.util.Comparator;
 import java.util.Iterator;
-import edu.princeton.cs.algs4.MinPQ; // Minimum-oriented priority queue(project requirement)
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
@@ -8,106 +6,288 @@ import edu.princeton.cs.algs4.StdOut;
 // Project mark - 97
 
 public class Solver {
-    private Node first;
+    // weight of the heuristic in Mode.WEIGHTED and Mode.ANYTIME unless another one is given
+    public static final double DEFAULT_WEIGHT = 2.0;
+    // largest weight allowed: priorities grow with it, and so does the queue (a stack for every f and h)
+    public static final double MAX_WEIGHT = 10.0;
+
+    private Board initial;
+    private long[] path;         // moves of the solution, 2 bits each (direction of the blank), null if there is none
     private int moves;
     private boolean solv;
+    private boolean aborted;     // search ran out of budget before finding a solution
+    private double bound;        // the solution is at most that many times longer than a shortest one
+    private Heuristic heuristic; // null - manhattan distance kept by the boards themselves
+    private Search search;       // estimates boards by the heuristic for the A* of the solver itself
+    private SearchMetrics metrics;
+    private boolean counting;
+
+    // search algorithm used by the solver
+    public enum Mode {
+        ASTAR,        // A* (default)
+        ASTAR_TWIN,   // A* that also solves the twin alongside, verifying the parity check on solvability
+        IDA_STAR,     // iterative deepening A*, memory linear in solution depth
+        PARALLEL,     // hash distributed A* on all available processors
+        BIDIRECTIONAL, // meet in the middle: from the initial board and from the goal at once
+        WEIGHTED,      // A* with the heuristic multiplied by a weight: faster, at most weight times longer
+        ANYTIME        // anytime repairing A*: weighted A* first, then shorter solutions while the budget lasts
+    }
 
     // find a solution to the initial board (using the A* algorithm)
     public Solver(Board initial) {
-        if (initial == null) throw new IllegalArgumentException();
+        this(initial, Mode.ASTAR);
+    }
+
+    // find a solution to the initial board using the specified algorithm
+    public Solver(Board initial, Mode mode) {
+        this(initial, mode, null);
+    }
+
+    // find a solution to the initial board using the specified algorithm and heuristic (null - manhattan)
+    public Solver(Board initial, Mode mode, Heuristic heuristic) {
+        this(initial, mode, heuristic, Budget.UNLIMITED);
+    }
+
+    // same, but give up once the search has used up its budget of expanded nodes or time
+    public Solver(Board initial, Mode mode, Heuristic heuristic, Budget budget) {
+        this(initial, mode, heuristic, budget, new SearchMetrics());
+    }
+
+    // same, counting the work of the search in 'metrics' (which may also report progress along the way,
+    // or count only what the budget needs, see SearchMetrics.off())
+    public Solver(Board initial, Mode mode, Heuristic heuristic, Budget budget, SearchMetrics metrics) {
+        this(initial, mode, heuristic, budget, metrics, DEFAULT_WEIGHT);
+    }
+
+    // same, with the weight (1 to MAX_WEIGHT) of the heuristic for Mode.WEIGHTED and Mode.ANYTIME, other modes ignore it
+    // in Mode.ANYTIME the time budget is the deadline: the best solution found by then is kept
+    public Solver(Board initial, Mode mode, Heuristic heuristic, Budget budget, SearchMetrics metrics,
+                  double weight) {
+        if (initial == null || mode == null || budget == null || metrics == null
+                || !(weight >= 1 && weight <= MAX_WEIGHT))
+            throw new IllegalArgumentException();
         
         moves = 0;      
         solv = true;
-        first = null;
+        aborted = false;
+        bound = 1;
+        path = null;
+        this.initial = initial;
+        this.heuristic = heuristic;
+        this.metrics = metrics;
+        counting = metrics.counting;
+        search = new Search(heuristic, initial.size());
         
-        // custom comparator based on weight: moves made for a board + it's Manhattan value. The less the better
-        Comparator<QueueNode> comparator = new Comparator<QueueNode>() {
-            @Override
-            public int compare(QueueNode b1, QueueNode b2) {
-                return (b1.moves + b1.manhattan) - (b2.moves + b2.manhattan);
-            }
-        };
+        // only 1 of the board and its twin is solvable, and which one is told by parity in O(n^2)
+        // (on a single row or column both can be unsolvable: there the twin is never searched)
+        boolean line = initial.rows() == 1 || initial.cols() == 1;
+        boolean checked = mode != Mode.ASTAR_TWIN || line;
+        long time = System.nanoTime();
+        metrics.startNanos = time;
+        if (checked && !initial.solvable()) {
+            solv = false;
+            moves = -1; // account for requirements of output for unsolvable board
+        }
+        metrics.checkNanos = System.nanoTime() - time;
+        if (!solv) return;
         
+        if      (mode == Mode.IDA_STAR)      solveIDA(initial, budget);
+        else if (mode == Mode.PARALLEL)      solveParallel(initial, budget);
+        else if (mode == Mode.BIDIRECTIONAL) solveBidirectional(initial, budget);
+        else if (mode == Mode.WEIGHTED)      solveWeighted(initial, budget, weight, false);
+        else if (mode == Mode.ANYTIME)       solveWeighted(initial, budget, weight, true);
+        else                                 solveAStar(initial, !checked, budget);
+
+        // the twin search ran out of budget before it could tell, parity tells instead
+        if (aborted && !checked) {
+            time = System.nanoTime();
+            solv = initial.solvable();
+            metrics.checkNanos = System.nanoTime() - time;
+        }
+    }
+
+    // A* search, if 'twin' is set - the twin is solved alongside to find out whether the board is solvable
+    private void solveAStar(Board initial, boolean twin, Budget budget) {
+        // queues are ordered by weight: moves made for a board + it's heuristic value. The less the better
+        // weights are small integers, so the queues keep a stack for every weight instead of a heap
         // using twin system to find whether the board is solvable - create a sepate queue for the twin
-        MinPQ<QueueNode> pq, pqTwin;
-        pq = new MinPQ<QueueNode>(comparator);
-        pqTwin = new MinPQ<QueueNode>(comparator);
-        pq.insert(new QueueNode(initial, 0, initial.manhattan(), new QueueNode(null, 0, 0, null)));
-        pqTwin.insert(new QueueNode(initial.twin(), 0, initial.twin().manhattan(), new QueueNode(null, -1, -1, null)));
+        // every queue has its table of fewest moves known for each board that was put in it
+        BucketQueue<Search.Node> pq, pqTwin = null;
+        TranspositionTable seen, seenTwin = null;
+        Expansion side, sideTwin = null;
+        pq = new BucketQueue<Search.Node>();
+        seen = new TranspositionTable();
+        side = new Expansion(pq, seen);
+        push(pq, new Search.Node(initial, 0, search.estimate(initial), -1, null));
+        seen.improve(initial.key(), 0);
+        if (twin) {
+            pqTwin = new BucketQueue<Search.Node>();
+            seenTwin = new TranspositionTable();
+            sideTwin = new Expansion(pqTwin, seenTwin);
+            push(pqTwin, new Search.Node(initial.twin(), 0, search.estimate(initial.twin()), -1, null));
+            seenTwin.improve(initial.twin().key(), 0);
+        }
         
-        QueueNode cur;
+        Search.Node cur;
+        long time = System.nanoTime();
         while (true) {
             // solving original board
-            cur = pq.delMin();
-            // if board is solved - trace back the boards that led to solution and put them in stack
-            if (cur.node.isGoal()) {
-                while (cur.prev.node != null) {
-                    addToGameTree(cur.node);
-                    moves++;
-                    cur = cur.prev;
-                }
-                addToGameTree(cur.node);
+            cur = pop(pq, seen);
+            // if board is solved - trace back the moves that led to solution
+            if (cur.board.isGoal()) {
+                metrics.searchNanos = System.nanoTime() - time;
+                replay(initial, cur.path());
                 break;
             }
-            // add all the neighbors (that are not a copy of a previous board)
-            for (Board neighbor : cur.node.neighbors()) {
-                if (!neighbor.equals(cur.prev.node)) 
-                    pq.insert(new QueueNode(neighbor, cur.moves + 1, neighbor.manhattan(), cur));
+            if (!metrics.expand(budget)) {
+                metrics.searchNanos = System.nanoTime() - time;
+                abort();
+                return;
             }
+            side.expand(cur);
+            if (counting) metrics.open(pq.size() + (pqTwin == null ? 0 : pqTwin.size()));
+            if (pqTwin == null) continue;
             
             // solve the twin and see if it is solvable. Only 1 of the 2 boards is solvable
-            cur = pqTwin.delMin();
-            if (cur.node.isGoal()) {
+            cur = pop(pqTwin, seenTwin);
+            if (cur.board.isGoal()) {
+                metrics.searchNanos = System.nanoTime() - time;
                 solv = false; // twin is solvable == original is not
                 moves = -1;   // account for requirements of output for unsolvable board
                 break;
             }
-            for (Board neighbor : cur.node.neighbors()) {
-                if (!neighbor.equals(cur.prev.node)) 
-                    pqTwin.insert(new QueueNode(neighbor, cur.moves + 1, neighbor.manhattan(), cur));
+            if (!metrics.expand(budget)) {
+                metrics.searchNanos = System.nanoTime() - time;
+                abort();
+                return;
             }
+            sideTwin.expand(cur);
         }
-    }
-    // used for stacking a solution
-    private class Node {
-        Board board;
-        Node next;
         
-        public Node (Board board, Node next) {
-            this.board = board;
-            this.next = next;
+        if (twin && solv != initial.solvable())
+            throw new IllegalStateException("twin search disagrees with parity on solvability");
+    }
+    // take the best node out of the queue, skipping the ones whose board was reached in fewer moves later on
+    private Search.Node pop(BucketQueue<Search.Node> pq, TranspositionTable seen) {
+        Search.Node cur = pq.delMin();
+        while (cur.moves > seen.get(cur.board.key())) {
+            if (counting) metrics.duplicates++;
+            cur = pq.delMin();
         }
+        return cur;
     }
-    // prev' is the previous board, used as QueueNode to allow backtracking once solution is found
-    private class QueueNode {
-        Board node;
-        int moves;
-        int manhattan; // caching manhattan value
-        QueueNode prev;
-        
-        public QueueNode(Board node, int moves, int manhattan, QueueNode prev) {
-            this.node = node;
-            this.moves = moves;
-            this.manhattan = manhattan;
-            this.prev = prev;
+    // one side of the search (the board or its twin): its queue and table, and the node being expanded
+    // neighbors are handed over by the board one at a time, no iterator is made for them
+    private class Expansion implements Board.Visitor {
+        private final BucketQueue<Search.Node> pq;
+        private final TranspositionTable seen;
+        private Search.Node cur;
+
+        Expansion(BucketQueue<Search.Node> pq, TranspositionTable seen) {
+            this.pq = pq;
+            this.seen = seen;
         }
+
+        // add all the neighbors that were not yet reached in as few moves (undoing the last move never is)
+        void expand(Search.Node node) {
+            cur = node;
+            node.board.forEachNeighbor(node.dir, this);
+            cur = null;
+        }
+
+        public void visit(Board neighbor, int dir) {
+            if (counting) metrics.generated++;
+            if (seen.improve(neighbor.key(), cur.moves + 1))
+                push(pq, new Search.Node(neighbor, cur.moves + 1, search.estimate(neighbor), dir, cur));
+            else if (counting)
+                metrics.duplicates++;
+        }
+    }
+    private void push(BucketQueue<Search.Node> pq, Search.Node node) {
+        pq.insert(node, node.moves + node.h, node.h);
+    }
+    // iterative deepening, the board is known to be solvable (it would never stop otherwise)
+    private void solveIDA(Board initial, Budget budget) {
+        long time = System.nanoTime();
+        IDAStar ida = new IDAStar(initial, heuristic, budget, metrics);
+        metrics.searchNanos = System.nanoTime() - time;
+        if (ida.moves() < 0) abort();
+        else                 replay(initial, ida.path());
+    }
+    // hash distributed A*, a thread for every processor
+    private void solveParallel(Board initial, Budget budget) {
+        long time = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ParallelAStar hda = new ParallelAStar(initial, heuristic, budget, metrics, threads);
+        metrics.searchNanos = System.nanoTime() - time;
+        if (hda.moves() < 0) abort();
+        else                 replay(initial, hda.path());
+    }
+    // bidirectional search, the halves of the solution are already spliced together
+    private void solveBidirectional(Board initial, Budget budget) {
+        long time = System.nanoTime();
+        BidirectionalSearch mm = new BidirectionalSearch(initial, heuristic, budget, metrics);
+        metrics.searchNanos = System.nanoTime() - time;
+        if (mm.moves() < 0) abort();
+        else                replay(initial, mm.path());
     }
-    // add solution step to stack
-    private void addToGameTree(Board board) {
-        Node temp = first;
-        first = new Node(board, temp);
+    // weighted A*, or ARA* if 'anytime' is set; the solution found may be longer than a shortest one
+    private void solveWeighted(Board initial, Budget budget, double weight, boolean anytime) {
+        long time = System.nanoTime();
+        AnytimeAStar ara = new AnytimeAStar(initial, heuristic, budget, metrics, weight, anytime);
+        metrics.searchNanos = System.nanoTime() - time;
+        if (ara.moves() < 0) abort();
+        else {
+            bound = ara.bound();
+            replay(initial, ara.path());
+        }
+    }
+    // keep the moves of the solution found, boards are only made when solution() is iterated
+    private void replay(Board initial, byte[] found) {
+        long time = System.nanoTime();
+        moves = found.length;
+        path = new long[(moves + 31) / 32];
+        for (int i = 0; i < moves; i++)
+            setMove(i, found[i]);
+        metrics.solutionNanos = System.nanoTime() - time;
+    }
+
+    // record the i-th move of the solution, the path starts out all zeros
+    private void setMove(int i, int dir) {
+        path[i >>> 5] |= (long) dir << ((i & 31) << 1);
+    }
+    // search ran out of budget: no solution, whether the board is solvable is as parity tells
+    private void abort() {
+        aborted = true;
+        moves = -1;
+        path = null;
     }
-    
     // is the initial board solvable? (see below)
     public boolean isSolvable() {
         return solv;
     }
 
-    // min number of moves to solve initial board; -1 if unsolvable
+    // min number of moves to solve initial board (see suboptimality()); -1 if unsolvable (or if the budget ran out)
     public int moves() {
         return moves;
     }
 
+    // the solution is at most that many times longer than a shortest one
+    // always 1 but in Mode.WEIGHTED and Mode.ANYTIME, whose moves() is not necessarily the minimum
+    public double suboptimality() {
+        return bound;
+    }
+
+    // counters of the search: expanded and generated nodes, duplicates, largest queue, time of every phase
+    public SearchMetrics metrics() {
+        return metrics;
+    }
+
+    // did the search stop because of its budget? (then there is no solution to show, even for a solvable board)
+    public boolean budgetExceeded() {
+        return aborted;
+    }
+
     // sequence of boards in a shortest solution; null if unsolvable
     public Iterable<Board> solution() {
         
@@ -115,48 +295,98 @@ public class Solver {
             @Override
             public Iterator<Board> iterator() {
                 return new Iterator<Board>() {
-                    private Node copy = first;
+                    // boards are replayed from the initial one, move by move (nothing if there is no solution)
+                    private Board cur = null;
+                    private int i = path == null ? moves + 1 : 0;
                     @Override
                     public boolean hasNext() {
-                        return copy != null;
+                        return i <= moves;
                     }
                     @Override
                     public Board next() {
-                        // iterate through stack if board is solvable, return null otherwise
                         if (!hasNext()) throw new java.util.NoSuchElementException();
-                        if (!isSolvable()) {
-                            copy = null;
-                            return null; }    
-                        Board temp = copy.board;
-                        copy = copy.next;
-                        return temp;
-
+                        cur = i == 0 ? initial : cur.slide(move(i - 1));
+                        i++;
+                        return cur;
                     }
                 };
             }
         };
     }
 
+    // direction the blank takes on the i-th move of the solution (0 - up, 1 - down, 2 - left, 3 - right)
+    public int move(int i) {
+        if (path == null || i < 0 || i >= moves) throw new IndexOutOfBoundsException();
+        return (int) (path[i >>> 5] >>> ((i & 31) << 1)) & 3;
+    }
+
+    // moves of the solution as a string of 'U', 'D', 'L', 'R' (the way the blank goes); null if unsolvable
+    public String moveString() {
+        if (path == null) return null;
+        char[] letters = new char[moves];
+        for (int i = 0; i < moves; i++)
+            letters[i] = "UDLR".charAt(move(i));
+        return new String(letters);
+    }
+
     // test client
     public static void main(String[] args) {
-        // create initial board from file
-        int n = StdIn.readInt();
-        int[][] tiles = new int[n][n];
+        // create initial board from file: n and n*n tiles, or rows, columns and the tiles of a rectangular board
+        int[] input = StdIn.readAllInts();
+        int n = input[0], cols = n, first = 1;
+        if (input.length != 1 + n*n) {
+            cols = input[1];
+            first = 2;
+        }
+        int[][] tiles = new int[n][cols];
         
         for (int i = 0; i < n; i++)
-            for (int j = 0; j < n; j++)
-                tiles[i][j] = StdIn.readInt();
+            for (int j = 0; j < cols; j++)
+                tiles[i][j] = input[first + i*cols + j];
         
         Board initial = new Board(tiles);
 
-        // solve the puzzle
-        Solver solver = new Solver(initial);
+        // solve the puzzle, "ida" argument switches to iterative deepening, "twin" - to A* with the twin search,
+        // "hda" - to parallel A*, "mm" - to bidirectional search, "wa" - to weighted A*, "ara" - to anytime A*
+        Mode mode = Mode.ASTAR;
+        if (args.length > 0 && args[0].equals("ida"))  mode = Mode.IDA_STAR;
+        if (args.length > 0 && args[0].equals("twin")) mode = Mode.ASTAR_TWIN;
+        if (args.length > 0 && args[0].equals("hda"))  mode = Mode.PARALLEL;
+        if (args.length > 0 && args[0].equals("mm"))   mode = Mode.BIDIRECTIONAL;
+        if (args.length > 0 && args[0].equals("wa"))   mode = Mode.WEIGHTED;
+        if (args.length > 0 && args[0].equals("ara"))  mode = Mode.ANYTIME;
+        // optional second argument: "lc" for linear conflict, or a pattern database file (built there if missing),
+        // "md" keeps manhattan distance
+        Heuristic heuristic = null;
+        if (args.length > 1 && args[1].equals("lc")) heuristic = new LinearConflict();
+        else if (args.length > 1 && !args[1].equals("md")) {
+            // tables are made for square boards only, open() checks that they are made for this one's size
+            if (n != cols)
+                throw new IllegalArgumentException("a pattern database needs a square board, not " + n + "x" + cols);
+            try {
+                heuristic = PatternDatabase.open(new java.io.File(args[1]), n);
+            }
+            catch (java.io.IOException e) {
+                throw new IllegalArgumentException("could not open " + args[1], e);
+            }
+        }
+        // then the weight of the heuristic and the deadline in ms (0 - none) for the weighted searches
+        double weight = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_WEIGHT;
+        Budget budget = args.length > 3 ? new Budget(0, Long.parseLong(args[3])) : Budget.UNLIMITED;
+        Solver solver = new Solver(initial, mode, heuristic, budget, new SearchMetrics(), weight);
 
         // print solution to standard output
         if (!solver.isSolvable())
             StdOut.println("No solution possible");
+        else if (solver.budgetExceeded())
+            StdOut.println("No solution found in time");
         else {
-            StdOut.println("Minimum number of moves = " + solver.moves() + "\n");
+            if (solver.suboptimality() > 1)
+                StdOut.println("Number of moves = " + solver.moves() + " (at most "
+                               + solver.suboptimality() + " times the minimum)");
+            else
+                StdOut.println("Minimum number of moves = " + solver.moves());
+            StdOut.println("Moves of the blank: " + solver.moveString() + "\n");
             for (Board board : solver.solution())
                 StdOut.println(board);
         }
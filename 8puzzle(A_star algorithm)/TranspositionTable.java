@@ -0,0 +1,85 @@
+// Open-addressing hash table from Board.key() to the fewest moves found so far for that board
+// Keys and values are kept in primitive arrays (no boxing), collisions are resolved by linear probing
+// Optionally an item (the search node of that many moves) is kept along, the array for them is made on first use
+
+class TranspositionTable {
+    private long[] keys;
+    private int[] moves;     // moves + 1, so that 0 marks an empty slot
+    private Object[] items;  // null until the first item is recorded
+    private int size;
+
+    public TranspositionTable() {
+        keys = new long[1 << 10];
+        moves = new int[1 << 10];
+        size = 0;
+    }
+
+    // number of boards in the table
+    public int size() {
+        return size;
+    }
+
+    // fewest moves recorded for the key, -1 if the key is not in the table
+    public int get(long key) {
+        int i = slot(keys, moves, key);
+        return moves[i] - 1;
+    }
+
+    // item recorded along with the fewest moves for the key, null if there is none
+    public Object item(long key) {
+        if (items == null) return null;
+        return items[slot(keys, moves, key)];
+    }
+
+    // record that the board is reachable in 'm' moves
+    // returns false (and changes nothing) if it was already reached in 'm' moves or fewer
+    public boolean improve(long key, int m) {
+        return improve(key, m, null);
+    }
+
+    // same, and keep the item along with the new number of moves
+    public boolean improve(long key, int m, Object item) {
+        int i = slot(keys, moves, key);
+        if (moves[i] != 0 && moves[i] - 1 <= m)
+            return false;
+
+        if (item != null && items == null)
+            items = new Object[keys.length];
+        if (items != null)
+            items[i] = item;
+        if (moves[i] == 0) {
+            keys[i] = key;
+            moves[i] = m + 1;
+            if (++size > keys.length / 2)
+                resize(2 * keys.length);
+            return true;
+        }
+        moves[i] = m + 1;
+        return true;
+    }
+
+    // slot that holds the key, or the empty slot where it would be inserted
+    private static int slot(long[] keys, int[] moves, long key) {
+        int mask = keys.length - 1;
+        int i = (int) Board.mix(key) & mask;
+        while (moves[i] != 0 && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldMoves = moves;
+        Object[] oldItems = items;
+        keys = new long[capacity];
+        moves = new int[capacity];
+        items = oldItems == null ? null : new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldMoves[i] == 0) continue;
+            int j = slot(keys, moves, oldKeys[i]);
+            keys[j] = oldKeys[i];
+            moves[j] = oldMoves[i];
+            if (items != null) items[j] = oldItems[i];
+        }
+    }
+}
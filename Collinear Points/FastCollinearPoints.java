@@ -1,5 +1,7 @@
 import edu.princeton.cs.algs4.StdOut;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdIn;
 
@@ -7,142 +9,236 @@ import edu.princeton.cs.algs4.StdIn;
 // Project mark - 89
 
 public class FastCollinearPoints {
+    private static final int RADIX = 256; // radix sort by 8 bits a pass
+
     private LineSegment[] fullSegments = new LineSegment[0];
     
     /*
      * Take point 'p', treat it as origin
-     * For each other point 'q' determine the slope it creates with p
-     * Sort remaining points with respect to slope they make with p
-     * Check adjacent points if all of them make the same slope with ps
+     * For each point 'q' after it (by value) determine the slope it creates with p, as an exact integer key:
+     * the fraction dy/dx reduced by their gcd, packed into a long
+     * Sort the keys (radix sort, carrying the points along) and check adjacent keys: equal keys - same line
      */
     public FastCollinearPoints(Point[] points) {
-        if (points == null) throw new IllegalArgumentException();
+        this(points, 1);
+    }
+    
+    // same, with the origins spread over 'threads' workers; the segments come out exactly as with one
+    public FastCollinearPoints(Point[] points, int threads) {
+        if (points == null || threads < 1) throw new IllegalArgumentException();
         
-        int n = points.length;
-        sort(points); // Sort original array and also check if input is correct
-
-        for (int i = 0; i < n-1; i++) {
-            // Sort all the remaining points with respect to slope
-            sort(points, i+1, points[i]);
-            
-            int j = i+1, s; // next element, counter of elements on the same line
-            double refSlope;
-            while (j < n) { // iterate through all remaining elements
-                s = 1;
-                refSlope = points[i].slopeTo(points[j]); // reference slope with a 1st element on the line
-                // go through all adjacent elements as long as they make the same slope(on the same line)
-                while (j+s < n && points[i].slopeTo(points[j+s]) == refSlope) {
-                    s++;
-                }
-                
-                // if we have a total of 4 or more (count points[i] as well), then create a new line segment
-                if (s >= 3) { 
-                    // go through previous points to check if we haven't yet created this line segment
-                    boolean u = true;
-                    for (int k = i-1; k > 0; k--) {
-                        // reverse slope since all point before are smaller in value
-                        if (points[k].slopeTo(points[i]) == refSlope) {
-                            u = false; break;
-                        }
-                    }
-                    // only if we haven't had this line segment - create it
-                    // array was sorted by a stable sort, so end points on the array group are guaranteed to be line's end points
-                    if (u) addSegment(points[i], points[j+s-1]);
-                }
-                j += s; // switch to next group of points, not on the current line
+        Point[] sorted = sort(points); // sorted copy of the input, also checks if input is correct
+        if (sorted.length < 4) return;
+        Search search = new Search(sorted);
+        Ends found = new Ends();
+        if (threads == 1) {
+            for (int i = 0; i < sorted.length - 3; i++)
+                search.origin(i, found);
+        }
+        else {
+            // many more ranges than threads: the earlier origins have more points after them, ranges get stolen
+            int grain = Math.max(1, sorted.length / (16 * threads));
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                found = pool.invoke(new Origins(search, 0, sorted.length - 3, grain));
+            }
+            finally {
+                pool.shutdown();
             }
-            
-            // since array was rearranged by slopeOrder sort, sort the remaining points again to put them in order by value
-            sort(points, i+1);
         }
+
+        fullSegments = new LineSegment[found.count / 2];
+        for (int k = 0; k < fullSegments.length; k++)
+            fullSegments[k] = new LineSegment(sorted[found.ends[2*k]], sorted[found.ends[2*k + 1]]);
     }
     
-    // merge sorts by value
-    private static void merge(Point[] a, Point[] temp, int lo, int mid, int hi) {
-        for (int k = lo; k <= hi; k++)
-            temp[k] = a[k];
-        
-        int i = lo, j = mid + 1;
-        for (int k = lo; k <= hi; k++) {
-            if (i > mid) a[k] = temp[j++];
-            else if (j > hi) a[k] = temp[i++];
-            else if (less(temp[j], temp[i])) a[k] = temp[j++];
-            else a[k] = temp[i++];
-        }
-    } 
-    
-    // merge sorts by slope order
-    private static void merge(Point[] a, Point[] temp, int lo, int mid, int hi, Point point) {
-        for (int i = lo; i <= hi; i++) {
-            temp[i] = a[i];
+    // sorted copy by value, checked for nulls and duplicates (Project specification)
+    private static Point[] sort(Point[] points) {
+        Point[] a = new Point[points.length];
+        for (int i = 0; i < a.length; i++) {
+            if (points[i] == null) throw new IllegalArgumentException();
+            a[i] = points[i];
         }
-       
-        int i = lo, j = mid+1;
-        Comparator<Point> comparator = point.slopeOrder();
-        for (int k = lo; k <= hi; k++) {
-            if (j > hi) a[k] = temp[i++];
-            else if (i > mid) a[k] = temp[j++];
-            else if (comparator.compare(temp[j], temp[i]) < 0) a[k] = temp[j++];
-            else a[k] = temp[i++];
-        }
-    }   
+        Arrays.sort(a);
+        for (int i = 0; i < a.length - 1; i++)
+            if (a[i].compareTo(a[i+1]) == 0) throw new IllegalArgumentException();
+        return a;
+    }
     
-    // first sort
-    private static void sort(Point[] a) {
-        int n = a.length;
-        for (int i = 0; i < n; i++) { // preliminary check for null elements
-            if (a[i] == null) throw new IllegalArgumentException();
-        }
+    // end points (indices of the sorted points) of the segments found, 2 ints a segment
+    private static class Ends {
+        int[] ends = new int[16];
+        int count;
         
-        Point[] temp = new Point[n];
-        for (int sz = 1; sz < n; sz *= 2) { // bottom-up merge sort by value
-            for (int lo = 0; lo < n - sz; lo += 2*sz) {
-                merge(a, temp, lo, lo+sz-1, Math.min(lo+2*sz-1, n-1));
-            }
+        void add(int p, int q) {
+            if (count == ends.length) ends = Arrays.copyOf(ends, 2 * count);
+            ends[count++] = p;
+            ends[count++] = q;
         }
         
-        for (int i = 0; i < n-1; i++) { // post-sort check for duplicates (Project specification)
-            if (a[i].compareTo(a[i+1]) == 0) throw new IllegalArgumentException();
+        void addAll(Ends that) {
+            if (count + that.count > ends.length)
+                ends = Arrays.copyOf(ends, Math.max(2 * ends.length, count + that.count));
+            System.arraycopy(that.ends, 0, ends, count, that.count);
+            count += that.count;
         }
     }
     
-    // same as first sort - by value, but without input checks and with beginning element specified
-    private static void sort(Point[] a, int low) {
-        int n = a.length;
-        Point[] temp = new Point[n];
-        for (int sz = 1; sz < n; sz *= 2) {
-            for (int lo = low; lo < n - sz; lo += 2*sz) {
-                merge(a, temp, lo, lo+sz-1, Math.min(lo+2*sz-1, n-1));
+    // origins lo..hi-1, halved down to 'grain' of them. Every range keeps its own segments, and the halves are
+    // joined left first, so they end up in the order of the origins as in the sequential loop; there is nothing
+    // to de-duplicate, since a segment is only found from its smallest point. A range of 'grain' origins makes a
+    // Search of its own and uses it for all of them: no buffer outlives the range, whichever thread ran it
+    private static class Origins extends RecursiveTask<Ends> {
+        private static final long serialVersionUID = 1L;
+        private final Search shared;    // the coordinates, shared by the Search of every range
+        private final int lo, hi, grain;
+        
+        Origins(Search shared, int lo, int hi, int grain) {
+            this.shared = shared;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+        
+        @Override
+        protected Ends compute() {
+            if (hi - lo <= grain) {
+                Ends found = new Ends();
+                Search search = new Search(shared, lo);
+                for (int i = lo; i < hi; i++)
+                    search.origin(i, found);
+                return found;
             }
+            int mid = (lo + hi) >>> 1;
+            Origins left = new Origins(shared, lo, mid, grain);
+            left.fork();
+            Ends right = new Origins(shared, mid, hi, grain).compute();
+            Ends found = left.join();
+            found.addAll(right);
+            return found;
         }
     }
     
-    // sorts by slope order
-    private static void sort(Point[] a, int low, Point mainPoint) {
-        int n = a.length;
-        Point[] temp = new Point[n];
-        for (int sz = 1; sz < n; sz *= 2) { // bottom up merge sort
-            for (int lo = low; lo < n - sz; lo += 2*sz) {
-                merge(a, temp, lo, lo+sz-1, Math.min(lo+2*sz-1, n-1), mainPoint);
+    // the search from one origin after another. Coordinates and every buffer are made once, so nothing is
+    // allocated per origin. Slope keys: dy >= 0 (q comes after p), so dy/g takes the high bits and dx/g + spread
+    // (never negative) the low 'shift' bits; every difference is at most the spread of the coordinates
+    private static class Search {
+        private final int n;
+        private final int[] xs, ys;
+        private final long spread;
+        private final int shift, passes;
+        private long[] key, keyTmp;
+        private int[] idx, idxTmp; // points of the keys
+        private final int[] count = new int[RADIX];
+        
+        Search(Point[] sorted) {
+            n = sorted.length;
+            xs = new int[n];
+            ys = new int[n];
+            long minX = Long.MAX_VALUE, maxX = Long.MIN_VALUE, minY = Long.MAX_VALUE, maxY = Long.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                xs[i] = sorted[i].x();
+                ys[i] = sorted[i].y();
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
             }
+            spread = Math.max(0, Math.max(maxX - minX, maxY - minY));
+            // slopeTo() takes differences as ints too
+            if (spread > Integer.MAX_VALUE) throw new IllegalArgumentException("coordinates are too far apart");
+            shift = 64 - Long.numberOfLeadingZeros(2 * spread);
+            passes = (shift + 64 - Long.numberOfLeadingZeros(spread) + 7) / 8;
+            
+            key = new long[n];
+            keyTmp = new long[n];
+            idx = new int[n];
+            idxTmp = new int[n];
         }
-    }   
-    
-    private static boolean less(Point v, Point m) {
-        return v.compareTo(m) < 0;
-    }
-    
-    private void addSegment(Point p1, Point p2) { 
-        resize(fullSegments.length+1); // To properly store all actual line segments - increase by 1
-        fullSegments[fullSegments.length-1] = new LineSegment(p1, p2);
-    }
-    
-    private void resize(int n) {
-        LineSegment[] temp = new LineSegment[n];
-        for (int i = 0; i < n-1; i++) {
-            temp[i] = fullSegments[i];
+        
+        // another search over the same points for the origins from 'lo' on, with buffers of its own: as many
+        // slots as there are points after lo
+        Search(Search that, int lo) {
+            n = that.n;
+            xs = that.xs;
+            ys = that.ys;
+            spread = that.spread;
+            shift = that.shift;
+            passes = that.passes;
+            key = new long[n - lo - 1];
+            keyTmp = new long[n - lo - 1];
+            idx = new int[n - lo - 1];
+            idxTmp = new int[n - lo - 1];
+        }
+        
+        // segments whose smallest point is points[i]
+        void origin(int i, Ends found) {
+            int m = 0;
+            for (int j = i + 1; j < n; j++) {
+                int dy = ys[j] - ys[i], dx = xs[j] - xs[i];
+                int g = gcd(dy, Math.abs(dx));
+                key[m] = (long) (dy / g) << shift | (dx / g + spread);
+                idx[m++] = j;
+            }
+            sort(m);
+            
+            for (int a = 0; a < m; ) {
+                int b = a + 1; // keys a..b-1 are the same: p and those points are on one line
+                while (b < m && key[b] == key[a]) b++;
+                // keys were filled in order of points and the sort is stable, so the last one is the far end point
+                if (b - a >= 3 && first(i, idx[a])) found.add(i, idx[b-1]);
+                a = b;
+            }
+        }
+        
+        // is points[i] the smallest point on the line through points[i] and points[j]?
+        private boolean first(int i, int j) {
+            long dy = ys[j] - ys[i], dx = xs[j] - xs[i];
+            for (int k = 0; k < i; k++)
+                if ((ys[k] - ys[i]) * dx == (xs[k] - xs[i]) * dy) return false;
+            return true;
+        }
+        
+        // stable LSD radix sort of key[0..m-1] with idx alongside, a pass per 8 bits of the keys;
+        // a pass that would leave every key in one bucket is skipped
+        private void sort(int m) {
+            for (int pass = 0; pass < passes && m > 1; pass++) {
+                int s = 8 * pass;
+                Arrays.fill(count, 0);
+                for (int a = 0; a < m; a++)
+                    count[(int) (key[a] >>> s) & (RADIX - 1)]++;
+                if (count[(int) (key[0] >>> s) & (RADIX - 1)] == m) continue;
+                
+                for (int d = 0, sum = 0; d < RADIX; d++) {
+                    int c = count[d];
+                    count[d] = sum;
+                    sum += c;
+                }
+                for (int a = 0; a < m; a++) {
+                    int to = count[(int) (key[a] >>> s) & (RADIX - 1)]++;
+                    keyTmp[to] = key[a];
+                    idxTmp[to] = idx[a];
+                }
+                long[] k = key; key = keyTmp; keyTmp = k;
+                int[] v = idx; idx = idxTmp; idxTmp = v;
+            }
+        }
+        
+        // binary gcd of 2 non-negative ints, not both 0
+        private static int gcd(int a, int b) {
+            if (a == 0) return b;
+            if (b == 0) return a;
+            int twos = Integer.numberOfTrailingZeros(a | b);
+            a >>>= Integer.numberOfTrailingZeros(a);
+            while (b != 0) {
+                b >>>= Integer.numberOfTrailingZeros(b);
+                if (a > b) {
+                    int t = a; a = b; b = t;
+                }
+                b -= a;
+            }
+            return a << twos;
         }
-        fullSegments = temp;
     }
        
     public int numberOfSegments() {
@@ -156,7 +252,9 @@ public class FastCollinearPoints {
         return copy;
     }
     
+    // optionally the number of threads to search with
     public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
      // read the n points from a file
         int n = StdIn.readInt();
         Point[] points = new Point[n];
@@ -176,7 +274,7 @@ public class FastCollinearPoints {
         StdDraw.show();
 
         // print and draw the line segments
-        FastCollinearPoints collinear = new FastCollinearPoints(points);
+        FastCollinearPoints collinear = new FastCollinearPoints(points, threads);
         for (LineSegment segment : collinear.segments()) {
             StdOut.println(segment);
             segment.draw();
@@ -15,6 +15,15 @@ public class Point implements Comparable<Point> {
         this.y = y;
     }
 
+    // coordinates, for the integer slope keys of FastCollinearPoints
+    int x() {
+        return x;
+    }
+
+    int y() {
+        return y;
+    }
+
     // draws this point to standard draw.
     public void draw() {
         StdDraw.point(x, y);
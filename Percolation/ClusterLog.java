@@ -0,0 +1,131 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import edu.princeton.cs.algs4.StdOut;
+
+// Binary log of the cluster statistics of a Percolation, a snapshot every 'every' opened sites (see
+// Percolation.logClusters()). Snapshots are packed into blocks in memory; full blocks are written out by a
+// thread of the log's own, so the simulation only waits when all of the blocks are still being written.
+// Format (big-endian): int MAGIC, int every, then 20 bytes a snapshot -
+//   int open sites, int clusters, int largest cluster, long sum of the squared cluster sizes
+
+public class ClusterLog implements AutoCloseable {
+    static final int MAGIC = 0x50434c31; // "PCL1"
+    private static final int RECORD = 20, BLOCK = RECORD * 3276, BLOCKS = 4;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    final int every;
+    private final OutputStream out;
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BLOCKS + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BLOCKS);
+    private final Thread writer;
+    private volatile IOException failure;  // first write that failed, reported by close()
+    private ByteBuffer block;
+
+    public ClusterLog(OutputStream out, int every) {
+        if (out == null || every < 1) throw new IllegalArgumentException();
+        this.out = out;
+        this.every = every;
+        for (int i = 1; i < BLOCKS; i++)
+            free.add(ByteBuffer.allocate(BLOCK));
+        block = ByteBuffer.allocate(BLOCK);
+        block.putInt(MAGIC).putInt(every);
+
+        writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (ByteBuffer b = full.take(); b != END; b = full.take()) {
+                        // after a failure blocks are only given back, the simulation goes on
+                        if (failure == null) {
+                            try {
+                                out.write(b.array(), 0, b.position());
+                            }
+                            catch (IOException e) {
+                                failure = e;
+                            }
+                        }
+                        b.clear();
+                        free.put(b);
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "cluster log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void record(int open, int clusters, int largest, long squares) {
+        if (block.remaining() < RECORD) {
+            put(block);
+            try {
+                block = free.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        block.putInt(open).putInt(clusters).putInt(largest).putLong(squares);
+    }
+
+    private void put(ByteBuffer b) {
+        try {
+            full.put(b);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // writes out what is left and closes the stream
+    public void close() throws IOException {
+        if (block == null) return;
+        put(block);
+        put(END);
+        block = null;
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure != null) throw failure;
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    // prints a log: open sites, clusters, largest cluster, mean cluster size (open sites over clusters) and
+    // mean size of the cluster of an open site (sum of squared sizes over open sites)
+    public static void main(String[] args) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])))) {
+            if (in.readInt() != MAGIC) throw new IllegalArgumentException("not a cluster log");
+            StdOut.println("# a snapshot every " + in.readInt() + " open sites");
+            while (true) {
+                int open;
+                try {
+                    open = in.readInt();
+                }
+                catch (EOFException e) {
+                    break;
+                }
+                int clusters = in.readInt(), largest = in.readInt();
+                long squares = in.readLong();
+                StdOut.println(open + "\t" + clusters + "\t" + largest + "\t" + (double) open / clusters
+                               + "\t" + (double) squares / open);
+            }
+        }
+    }
+}
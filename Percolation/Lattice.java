@@ -0,0 +1,144 @@
+// Geometry of a percolation model: which cells are sites and which sites are neighbors
+// Sites are laid out row-major in a grid padded with a border of cells that never open, so a neighbor is
+// always the site's index plus an offset and no bound is ever checked. Offsets of a site are picked by the
+// parity of its index (q & mask): all sites share one list, except on the honeycomb lattice, whose width
+// is made odd so that the parity of the index is the parity of row + col.
+// The first row (layer) of sites is the top, the last one is the bottom.
+
+public final class Lattice {
+    final String name;
+    final int width;         // cells in a row of the padded grid
+    final int cells;         // cells of the padded grid, sites and border
+    final int[][] offsets;   // offsets[q & mask] - neighbors of site q, relative to q
+    final int mask;
+    final int topEnd;        // cells below it are in the top row (or border)
+    final int bottomStart;   // cells from it on are in the bottom row (or border)
+    final int n;             // sites in a row
+    private final int layers; // number of layers (1 - a 2-d lattice)
+    private int[] sites;     // indices of all the sites in order, made on first use
+    private int[] bonds;     // site * degree + number of the offset, for every pair of neighbors once
+
+    private Lattice(String name, int n, int layers, int width, int cells, int[][] offsets, int mask,
+                    int topEnd, int bottomStart) {
+        this.name = name;
+        this.n = n;
+        this.layers = layers;
+        this.width = width;
+        this.cells = cells;
+        this.offsets = offsets;
+        this.mask = mask;
+        this.topEnd = topEnd;
+        this.bottomStart = bottomStart;
+    }
+
+    // n-by-n square lattice, 4 neighbors (the model of Percolation)
+    public static Lattice square(int n) {
+        int w = width(n, false);
+        return flat("square", n, w, new int[][] { { -w, w, -1, 1 } }, 0);
+    }
+
+    // n-by-n square lattice with diagonal neighbors too (8 of them)
+    public static Lattice moore(int n) {
+        int w = width(n, false);
+        return flat("moore", n, w, new int[][] { { -w - 1, -w, -w + 1, -1, 1, w - 1, w, w + 1 } }, 0);
+    }
+
+    // triangular lattice: every site has 6 neighbors, the square ones and one of the diagonals
+    public static Lattice triangular(int n) {
+        int w = width(n, false);
+        return flat("triangular", n, w, new int[][] { { -w - 1, -w, -1, 1, w, w + 1 } }, 0);
+    }
+
+    // honeycomb (hexagonal) lattice as a brick wall: left, right and either up or down, by parity of row + col
+    public static Lattice honeycomb(int n) {
+        int w = width(n, true);
+        return flat("honeycomb", n, w, new int[][] { { -1, 1, w }, { -1, 1, -w } }, 1);
+    }
+
+    // n-by-n-by-n simple cubic lattice, 6 neighbors; top and bottom are the first and the last layer
+    public static Lattice cubic(int n) {
+        // (n + 2)^3 cells have to fit in an int (n <= 1288)
+        if (n < 1 || Math.pow(n + 2.0, 3) > Integer.MAX_VALUE) throw new IllegalArgumentException();
+        int w = n + 2, layer = w * w;
+        return new Lattice("cubic", n, n, w, layer * w, new int[][] { { -layer, -w, -1, 1, w, layer } }, 0,
+                           2 * layer, n * layer);
+    }
+
+    // lattice by its name ("square", "moore", "triangular", "honeycomb", "cubic")
+    public static Lattice of(String name, int n) {
+        switch (name) {
+            case "square":     return square(n);
+            case "moore":      return moore(n);
+            case "triangular": return triangular(n);
+            case "honeycomb":  return honeycomb(n);
+            case "cubic":      return cubic(n);
+            default:           throw new IllegalArgumentException("no lattice " + name);
+        }
+    }
+
+    // index of the site at (row, col) of a 2-d lattice, both 1-based
+    public int site(int row, int col) {
+        return row * width + col;
+    }
+
+    // number of sites
+    public int size() {
+        return n * n * layers;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+    // width of the padded grid of a 2-d lattice, odd if the parity of an index has to be that of row + col
+    private static int width(int n, boolean odd) {
+        if (n < 1 || n > 46338) throw new IllegalArgumentException(); // (n + 2)^2 cells have to fit in an int
+        int w = n + 2;
+        return odd && w % 2 == 0 ? w + 1 : w;
+    }
+
+    private static Lattice flat(String name, int n, int w, int[][] offsets, int mask) {
+        return new Lattice(name, n, 1, w, (n + 2) * w, offsets, mask, 2 * w, n * w);
+    }
+
+    // all the sites, made on first use (a single Percolation never needs them)
+    synchronized int[] sites() {
+        if (sites != null) return sites;
+        sites = new int[size()];
+        int k = 0;
+        for (int z = 0; z < layers; z++) {
+            int base = layers == 1 ? 0 : (z + 1) * width * width; // layers are padded too
+            for (int row = 1; row <= n; row++)
+                for (int col = 1; col <= n; col++)
+                    sites[k++] = base + row * width + col;
+        }
+        return sites;
+    }
+
+    // largest number of neighbors of a site
+    int degree() {
+        int d = 0;
+        for (int[] o : offsets)
+            d = Math.max(d, o.length);
+        return d;
+    }
+
+    // all the bonds (pairs of neighboring sites), made on first use
+    synchronized int[] bonds() {
+        if (bonds != null) return bonds;
+        int degree = degree(), count = 0;
+        if ((long) cells * degree > Integer.MAX_VALUE) throw new IllegalArgumentException("too many bonds");
+        int[] sites = sites();
+        boolean[] site = new boolean[cells];
+        for (int q : sites)
+            site[q] = true;
+        int[] all = new int[sites.length * degree];
+        for (int q : sites) {
+            int[] o = offsets[q & mask];
+            for (int k = 0; k < o.length; k++)
+                if (o[k] > 0 && site[q + o[k]]) all[count++] = q * degree + k;
+        }
+        bonds = java.util.Arrays.copyOf(all, count);
+        return bonds;
+    }
+}
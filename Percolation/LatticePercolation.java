@@ -0,0 +1,200 @@
+// Site or bond percolation on any Lattice, the union-find core of Percolation and of PercolationStats' trials
+// Union-find and cell state are packed in one int per cell of the padded grid:
+//   0    - closed site (border cells always are)
+//   > 0  - open site, the value is its parent + 1
+//   < 0  - open root, ~value holds abc + rank << 3. a = isOpen, b = is connected to top, c = is connected to bot
+// With bonds, a site is put in the union-find the first time one of its bonds opens.
+// Cluster statistics (number of clusters, the largest one, sum of squared sizes) are kept once asked for:
+// the size of a cluster is then stored at its root and the totals change by O(1) at every union.
+
+class LatticePercolation {
+    private static final int OPEN = 1 << 2, TOP = 1 << 1, BOTTOM = 1, RANK = 1 << 3;
+
+    private final Lattice lattice;
+    private final boolean bonds;  // bond percolation: bonds open, every site is there
+    private final int[] cell;
+    private final int degree;     // bonds are numbered site * degree + number of the offset
+    private int open;             // sites (or bonds) opened
+    private boolean percolating;
+
+    private int[] size;           // size[root] - sites of the root's cluster, null until trackClusters()
+    private int clusters, largest, sites;
+    private long squares;         // sum of the squared sizes of the clusters
+
+    LatticePercolation(Lattice lattice, boolean bonds) {
+        this.lattice = lattice;
+        this.bonds = bonds;
+        cell = new int[lattice.cells];
+        degree = lattice.degree();
+    }
+
+    // open the site (a cell of lattice.sites()), unless it is open; no bound is checked
+    void openSite(int q) {
+        if (cell[q] != 0) return;
+        open++;
+        add(q);
+
+        // merge with every open neighbor, one find for each
+        int root = q;
+        for (int o : lattice.offsets[q & lattice.mask])
+            if (cell[q + o] != 0) root = union(root, find(q + o));
+        // if canonical element connected to both top and bottom - then percolates
+        if ((~cell[root] & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolating = true;
+    }
+
+    // open the bond (one of lattice.bonds()); each bond is opened once
+    void openBond(int b) {
+        int q = b / degree, r = q + lattice.offsets[q & lattice.mask][b - q * degree];
+        open++;
+        if (cell[q] == 0) add(q);
+        if (cell[r] == 0) add(r);
+        int root = union(find(q), find(r));
+        if ((~cell[root] & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolating = true;
+    }
+
+    // open items[from..to-1], sites or bonds (by the kind of percolation), one after another;
+    // returns the index of the one that made the system percolate, -1 if none did
+    int openAll(int[] items, int from, int to) {
+        boolean before = percolating;
+        int first = -1;
+        for (int i = from; i < to; i++) {
+            if (bonds) openBond(items[i]);
+            else       openSite(items[i]);
+            if (first < 0 && !before && percolating) first = i;
+        }
+        return first;
+    }
+
+    // open sites[from..to-1] of a square lattice (Lattice.square), every site given by its index row * n + col
+    // (0-based, as in Percolation.openAll): each one is checked and turned into its cell in the pass that opens
+    // it. Returns the index of the site that made the system percolate, -1 if none did; a site out of range
+    // throws IllegalArgumentException, the ones before it stay open
+    int openSites(int[] sites, int from, int to) {
+        int n = lattice.n, count = n * n, w = lattice.width, pad = w - n, start = w + 1, first = -1;
+        boolean before = percolating;
+        for (int i = from; i < to; i++) {
+            int q = sites[i];
+            if (q < 0 || q >= count) throw new IllegalArgumentException("site " + q);
+            openSquare(q + q / n * pad + start, w);
+            if (first < 0 && !before && percolating) first = i;
+        }
+        return first;
+    }
+
+    // openSite() on a square lattice of the given width: the 4 neighbors are taken right off the width, not
+    // looked up among the lattice's offsets
+    private void openSquare(int q, int w) {
+        if (cell[q] != 0) return;
+        open++;
+        add(q);
+
+        int root = q;
+        if (cell[q - w] != 0) root = union(root, find(q - w));
+        if (cell[q + w] != 0) root = union(root, find(q + w));
+        if (cell[q - 1] != 0) root = union(root, find(q - 1));
+        if (cell[q + 1] != 0) root = union(root, find(q + 1));
+        if ((~cell[root] & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolating = true;
+    }
+
+    // the site on its own: a new root (and a new cluster of 1)
+    private void add(int q) {
+        cell[q] = ~(OPEN | ends(q));
+        if (size == null) return;
+        size[q] = 1;
+        clusters++;
+        sites++;
+        squares++;
+        if (largest == 0) largest = 1;
+    }
+
+    // top and bottom bits of a site of the first or the last row
+    private int ends(int q) {
+        return (q < lattice.topEnd ? TOP : 0) | (q >= lattice.bottomStart ? BOTTOM : 0);
+    }
+
+    // root of the site's tree; every site on the way is pointed to its grandparent (path halving)
+    private int find(int p) {
+        while (cell[p] > 0) {
+            int parent = cell[p] - 1;
+            if (cell[parent] > 0) cell[p] = cell[parent];
+            p = cell[p] - 1;
+        }
+        return p;
+    }
+
+    // link 2 roots by rank, the new root gets the top/bottom bits of both; returns the new root
+    private int union(int a, int b) {
+        if (a == b) return a;
+        int x = ~cell[a], y = ~cell[b];
+        if (x >>> 3 < y >>> 3) {
+            int t = a; a = b; b = t;
+            t = x; x = y; y = t;
+        }
+        int bits = x | (y & (TOP | BOTTOM));
+        if (x >>> 3 == y >>> 3) bits += RANK;
+        cell[a] = ~bits;
+        cell[b] = a + 1;
+        if (size != null) {
+            squares += 2L * size[a] * size[b]; // (x + y)^2 - x^2 - y^2
+            size[a] += size[b];
+            clusters--;
+            largest = Math.max(largest, size[a]);
+        }
+        return a;
+    }
+
+    boolean isOpen(int q) {
+        return cell[q] != 0;
+    }
+
+    // is the site connected to the top row?
+    boolean isFull(int q) {
+        if (cell[q] == 0) return false;
+        return (~cell[find(q)] & TOP) != 0; // canonical element's bit 'b'
+    }
+
+    // sites (or bonds) opened so far
+    int opened() {
+        return open;
+    }
+
+    boolean percolates() {
+        return percolating;
+    }
+
+    // start keeping the cluster statistics: the clusters opened so far are counted once, O(cells)
+    void trackClusters() {
+        if (size != null) return;
+        size = new int[cell.length];
+        for (int q = 0; q < cell.length; q++)
+            if (cell[q] != 0) size[find(q)]++;
+        for (int q = 0; q < cell.length; q++) {
+            if (cell[q] >= 0) continue;
+            clusters++;
+            sites += size[q];
+            squares += (long) size[q] * size[q];
+            largest = Math.max(largest, size[q]);
+        }
+    }
+
+    // the cluster statistics, from trackClusters() on
+    int clusters() {
+        return clusters;
+    }
+
+    int largestCluster() {
+        return largest;
+    }
+
+    // sites in the clusters (the open sites; with bonds - the sites with an open bond)
+    int clusterSites() {
+        return sites;
+    }
+
+    long squares() {
+        return squares;
+    }
+}
@@ -1,103 +1,127 @@
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
 
 // A secondary object made for simulation of one percolation cell
 // Project mark - 100
 
 public class Percolation {
-    private byte[] cell; // 3 bits - abc. a = isOpen, b = is connected to top, c = is connected to bot
-    private WeightedQuickUnionUF sites;
-    private int size, open;
-    private boolean isPercolating = false;
+    // the n-by-n square lattice; site (row, col) is its cell row * width + col
+    private Lattice lattice;
+    private LatticePercolation sites;
+    private int size;
+    private ClusterLog log;     // snapshots of the clusters, null - none
+    private int logged;         // open sites at the last snapshot
 
     public Percolation(int n) {
         if (n < 1) throw new IllegalArgumentException();
-        open = 0;
         size = n;
-        
-        sites = new WeightedQuickUnionUF(n*n);
-        
-        cell = new byte[n*n];
-        for (int i = 0; i < n*n; i++) {
-            cell[i] = 0;
-        }
+        lattice = Lattice.square(n);
+        sites = new LatticePercolation(lattice, false);
     }
 
     public void open(int row, int col) {
         if (row < 1 || row > size || col < 1 || col > size)
             throw new IllegalArgumentException();
-        
-        if (!isOpen(row, col)) {
-            open++;
-            
-            int q = (row - 1) * size + col - 1;
-            cell[q] |= (1 << 2);
-            int prevRoot, curRoot;
-            
-            if (row > 1) { // if it isn't connected to top row
-                if (isOpen(row - 1, col)) { // check a tile straight above
-                    prevRoot = sites.find(q - size);
-                    curRoot = sites.find(q);
-                    sites.union(prevRoot, curRoot); // merge 2 canonical elements
-                    cell[sites.find(q)] = (byte) (cell[prevRoot] | cell[curRoot]); // update byto info
-                }
-            }
-            // if connected - make sure it is indicated in canonical's element byte
-            else cell[sites.find(q)] |= (1 << 1); 
-            
-            if (row < size) { // if it isn't connected to bottom row
-                if (isOpen(row + 1, col)) { // check a tile straight below
-                    prevRoot = sites.find(q + size);
-                    curRoot = sites.find(q);
-                    sites.union(prevRoot, curRoot);
-                    cell[sites.find(q)] = (byte) (cell[prevRoot] | cell[curRoot]); 
-                }
-            }
-            // if connected - make sure it is indicated in canonical's element byte
-            else cell[sites.find(q)] |= (1 << 0);
-            
-            if (col > 1 && isOpen(row, col - 1)) { // if tile to the left exists
-                prevRoot = sites.find(q - 1);
-                curRoot = sites.find(q);
-                sites.union(prevRoot, curRoot);
-                cell[sites.find(q)] = (byte) (cell[prevRoot] | cell[curRoot]);
-            }
-            if (col < size && isOpen(row, col + 1)) { // if tile to the right exists
-                prevRoot = sites.find(q + 1);
-                curRoot = sites.find(q);
-                sites.union(prevRoot, curRoot);
-                cell[sites.find(q)] = (byte) (cell[prevRoot] | cell[curRoot]);
-            }
-            
-            // if canonical element connected to both top and bottom - then percolates
-            q = sites.find(q);
-            if (((cell[q] >> 1) & 1) * ((cell[q] >> 0) & 1) == 1) 
-                isPercolating = true;
+
+        sites.openSite(lattice.site(row, col));
+        if (log != null) snapshot();
+    }
+
+    // open sites[from..to-1] one after another, every site given by its index (row - 1) * n + col - 1.
+    // A site is checked against n^2 alone and goes straight to its cell, no row and column are made of it; open
+    // ones are skipped. A site out of range throws, the sites before it stay open.
+    // Returns the index (in sites) of the site that made the system percolate, -1 if none of them did
+    public int openAll(int[] sites, int from, int to) {
+        if (sites == null || from < 0 || to > sites.length || from > to)
+            throw new IllegalArgumentException();
+        if (log == null) return this.sites.openSites(sites, from, to);
+
+        // logged: a snapshot may be due after every site
+        int first = -1;
+        boolean before = percolates();
+        for (int i = from; i < to; i++) {
+            this.sites.openSites(sites, i, i + 1);
+            snapshot();
+            if (first < 0 && !before && percolates()) first = i;
         }
+        return first;
     }
 
     public boolean isOpen(int row, int col) {
         if (row < 1 || row > size || col < 1 || col > size)
             throw new IllegalArgumentException();
-        
-        int q = (row - 1) * size + col - 1;
-        
-        return ((cell[q] >> 2) & 1) == 1; // return bit 'a'
+
+        return sites.isOpen(lattice.site(row, col));
     }
 
     public boolean isFull(int row, int col) {
         if (row < 1 || row > size || col < 1 || col > size)
             throw new IllegalArgumentException();
-        
-        int q = (row - 1) * size + col - 1;
-        q = sites.find(q);
-        return ((cell[q] >> 1) & 1) == 1; // return canonical element's bit 'b'
+
+        return sites.isFull(lattice.site(row, col));
     }
 
     public int numberOfOpenSites() {
-        return open;
+        return sites.opened();
     }
 
     public boolean percolates() {
-        return isPercolating;
+        return sites.percolates();
+    }
+
+    // cluster statistics. They are kept up to date (O(1) a union) from the first call of any of these on;
+    // that first call counts the clusters there are already, O(n^2)
+    public int clusters() {
+        sites.trackClusters();
+        return sites.clusters();
+    }
+
+    public int largestCluster() {
+        sites.trackClusters();
+        return sites.largestCluster();
+    }
+
+    // open sites over clusters, 0 with no site open
+    public double meanClusterSize() {
+        sites.trackClusters();
+        return sites.clusters() == 0 ? 0 : (double) sites.clusterSites() / sites.clusters();
+    }
+
+    // from now on, write a snapshot of the cluster statistics to the log every log.every open sites;
+    // null stops logging. Closing the log is up to the caller
+    public void logClusters(ClusterLog log) {
+        if (log != null) sites.trackClusters();
+        this.log = log;
+        logged = sites.opened();
+    }
+
+    private void snapshot() {
+        int open = sites.opened();
+        if (open == logged || open % log.every != 0) return;
+        logged = open;
+        log.record(open, sites.clusters(), sites.largestCluster(), sites.squares());
+    }
+
+    // replay of a recorded sequence: n, then the row and column of every site opened (as in the input
+    // files of the percolation visualizer); tells when the system started to percolate
+    public static void main(String[] args) {
+        int[] input = StdIn.readAllInts();
+        int n = input[0];
+        int[] sites = new int[(input.length - 1) / 2];
+        for (int i = 0; i < sites.length; i++) {
+            int row = input[2*i + 1], col = input[2*i + 2];
+            // an index alone would let a column past n wrap around to the next row
+            if (row < 1 || row > n || col < 1 || col > n)
+                throw new IllegalArgumentException("site (" + row + ", " + col + ")");
+            sites[i] = (row - 1) * n + col - 1;
+        }
+
+        Percolation perc = new Percolation(n);
+        int first = perc.openAll(sites, 0, sites.length);
+        if (first < 0)
+            StdOut.println("does not percolate, " + perc.numberOfOpenSites() + " open sites");
+        else
+            StdOut.println("percolates at open call " + (first + 1) + " of " + sites.length
+                           + " (row " + input[2*first + 1] + ", col " + input[2*first + 2] + ")");
     }
 }
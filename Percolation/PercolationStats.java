@@ -1,40 +1,293 @@
-import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
 // Main object made for finding a percolation value through simulation of multiple cells
 // Project mark - 100
 
 public class PercolationStats {
+    // fewest trials the interval is trusted on: below it the sample stddev is too rough to stop by
+    private static final int MIN_TRIALS = 30;
+    // sites shuffled and opened at a time by the trials that open a random order in blocks: small, since the
+    // block the system percolates in is opened to its end
+    private static final int BLOCK = 64;
+
     // perform independent trials on an n-by-n grid
-    private double[] testResults;
     private int trials;
-    
-    // input a size of a cell and number of trials to make on it
+    private double mean, stddev;
+    private double trialMillis;   // mean time of a trial
+
+    // the way a trial picks the sites to open
+    public enum Method {
+        DRAWS,   // random sites until a closed one comes up (default)
+        SHUFFLE, // reference for CRITICAL, not a faster DRAWS: sites in a random order, one open() and one check
+                 // of percolation each. No draw is wasted, but the order takes 4 bytes a site and is read at
+                 // random, so a trial takes about as long as with DRAWS
+        SWEEP,   // threshold of a grid that isn't stored (see SweepPercolation): memory O(n), so n may be
+                 // large enough for billions of sites
+        CRITICAL // the order of SHUFFLE (the same thresholds for a seed), opened in blocks by Percolation.openAll():
+                 // no per-site check of the grid or of percolation, about 30% less time a trial than DRAWS
+    }
+
+    // input a size of a cell and number of trials to make on it (random seed, all available processors)
     public PercolationStats(int n, int trialsPar) {
-        if (n < 1 || trialsPar < 1)
+        this(n, trialsPar, new SplittableRandom().nextLong(), Runtime.getRuntime().availableProcessors());
+    }
+
+    // same, with trials spread over 'threads' workers; the results depend on the seed only, not on the threads
+    public PercolationStats(int n, int trialsPar, long seed, int threads) {
+        this(n, trialsPar, seed, threads, Method.DRAWS);
+    }
+
+    // same, with the given method of trials
+    public PercolationStats(int n, int trialsPar, long seed, int threads, Method method) {
+        if (n < 1 || trialsPar < 1 || threads < 1 || method == null)
             throw new IllegalArgumentException();
 
         trials = trialsPar;
-        testResults = new double[trials];
-        for (int i = 0; i < trials; i++) {
-            //individual trials. While the system doesn't percolate - open a random point in a cell
-            Percolation trial = new Percolation(n);
-
-            while (!trial.percolates()) {
-                int s = StdRandom.uniform(n * n);
-                int row = s / n + 1, col = s % n + 1;
-                trial.open(row, col);
+        ForkJoinPool pool = pool(threads);
+        try {
+            summarize(run(pool, new Trials(n, method, null, false, 0, trials, new SplittableRandom(seed))));
+        }
+        finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    // as many trials as it takes to get the 95% confidence interval down to +-halfWidth, but no longer than
+    // budgetMillis (checked between batches; Long.MAX_VALUE for no limit). Trials are made in batches and summed
+    // up as they come; a batch is as large as the current stddev says is still needed, at most the count done so
+    // far and no more than the time left allows. The results depend on the seed and on how many trials were
+    // done, see trials()
+    public PercolationStats(int n, double halfWidth, long budgetMillis, long seed, int threads, Method method) {
+        if (n < 1 || !(halfWidth > 0) || budgetMillis < 1 || threads < 1 || method == null)
+            throw new IllegalArgumentException();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        long start = System.nanoTime(), budget = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        Summary all = new Summary();
+        ForkJoinPool pool = pool(threads);
+        try {
+            int batch = Math.max(MIN_TRIALS, threads);
+            while (true) {
+                all.combine(run(pool, new Trials(n, method, null, false, 0, batch, random.split())));
+                double half = 1.96 * all.stddev() / Math.sqrt(all.count);
+                long elapsed = System.nanoTime() - start;
+                if (half <= halfWidth || elapsed >= budget) break;
+
+                double need = Math.pow(1.96 * all.stddev() / halfWidth, 2) - all.count;
+                double fits = (double) (budget - elapsed) * all.count / elapsed;
+                batch = (int) Math.max(threads, Math.min(Math.min(need, fits), Math.min(all.count, 1 << 20)));
+            }
+        }
+        finally {
+            if (pool != null) pool.shutdown();
+        }
+        trials = (int) all.count;
+        summarize(all);
+    }
+
+    // threshold of another model: site (or bond, if 'bonds') percolation on the lattice, trials made as in
+    // Method.CRITICAL by the same union-find core
+    public PercolationStats(Lattice lattice, boolean bonds, int trialsPar, long seed, int threads) {
+        if (lattice == null || trialsPar < 1 || threads < 1)
+            throw new IllegalArgumentException();
+        if ((bonds ? lattice.bonds() : lattice.sites()).length == 0)
+            throw new IllegalArgumentException("no " + (bonds ? "bonds" : "sites") + " on " + lattice);
+
+        trials = trialsPar;
+        ForkJoinPool pool = pool(threads);
+        try {
+            summarize(run(pool, new Trials(0, Method.CRITICAL, lattice, bonds, 0, trials, new SplittableRandom(seed))));
+        }
+        finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    // workers for the trials; a single thread is the calling one, no pool is started for it (null)
+    private static ForkJoinPool pool(int threads) {
+        return threads == 1 ? null : new ForkJoinPool(threads);
+    }
+
+    private static Summary run(ForkJoinPool pool, Trials trials) {
+        return pool == null ? trials.compute() : pool.invoke(trials);
+    }
+
+    private void summarize(Summary all) {
+        mean = all.mean;
+        stddev = all.stddev();
+        trialMillis = all.nanos / 1e6 / trials;
+    }
+
+    // individual trial. While the system doesn't percolate - open a random point in a cell
+    private static double trial(int n, SplittableRandom random) {
+        Percolation trial = new Percolation(n);
+
+        while (!trial.percolates()) {
+            int s = random.nextInt(n * n);
+            int row = s / n + 1, col = s % n + 1;
+            trial.open(row, col);
+        }
+        return (double) trial.numberOfOpenSites() / (n*n);
+    }
+
+    // same, but every open() gets a closed site: the next one of a random permutation of the sites.
+    // The permutation is made by Fisher-Yates one step per site, so only the part that gets used is shuffled.
+    // Sites come up in the same (uniform) order as in trial() once the repeated draws are left out.
+    // Kept as the plain form of criticalTrial(), which opens the same order in bulk: both give the same thresholds
+    private static double shuffledTrial(int n, SplittableRandom random) {
+        Percolation trial = new Percolation(n);
+        int[] order = new int[n*n];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+
+        for (int k = 0; !trial.percolates(); k++) {
+            shuffle(order, k, k + 1, random);
+            trial.open(order[k] / n + 1, order[k] % n + 1);
+        }
+        return (double) trial.numberOfOpenSites() / (n*n);
+    }
+
+    // open count at which the system starts to percolate, as a fraction of the sites. The random order is
+    // made a block at a time (the same steps as in shuffledTrial()) and every block is opened by one openAll()
+    // call: no percolation state is asked for after every single open, the call tells which site of the block
+    // was the critical one
+    private static double criticalTrial(int n, SplittableRandom random) {
+        Percolation trial = new Percolation(n);
+        int[] order = new int[n*n];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+
+        for (int from = 0; ; from += BLOCK) {
+            int to = Math.min(from + BLOCK, order.length);
+            shuffle(order, from, to, random);
+            int critical = trial.openAll(order, from, to);
+            if (critical >= 0) return (double) (critical + 1) / (n*n);
+        }
+    }
+
+    // same on a lattice: the sites (or bonds) in a random order, opened a block at a time
+    private static double latticeTrial(Lattice lattice, boolean bonds, SplittableRandom random) {
+        LatticePercolation trial = new LatticePercolation(lattice, bonds);
+        int[] order = (bonds ? lattice.bonds() : lattice.sites()).clone();
+
+        for (int from = 0; ; from += BLOCK) {
+            int to = Math.min(from + BLOCK, order.length);
+            shuffle(order, from, to, random);
+            int critical = trial.openAll(order, from, to);
+            if (critical >= 0) return (double) (critical + 1) / order.length;
+        }
+    }
+
+    // Fisher-Yates steps from..to-1: each puts a random one of order[k..] at k, so that order[0..to-1] is the
+    // start of a random permutation of order and the rest is left for the next steps
+    private static void shuffle(int[] order, int from, int to, SplittableRandom random) {
+        for (int k = from; k < to; k++) {
+            int j = k + random.nextInt(order.length - k);
+            int s = order[j];
+            order[j] = order[k];
+            order[k] = s;
+        }
+    }
+
+    // trials lo..hi-1, halved until single trials are left. Every half gets its own random stream, split off
+    // in the same order whichever thread runs it, so the same seed always gives the same results.
+    // Outside a pool (a single thread) nothing is forked, both halves are computed by the calling thread
+    private static class Trials extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L;
+        private final int n, lo, hi;
+        private final Method method;
+        private final Lattice lattice;  // null - the n-by-n grid of Percolation
+        private final boolean bonds;
+        private final SplittableRandom random;
+
+        Trials(int n, Method method, Lattice lattice, boolean bonds, int lo, int hi, SplittableRandom random) {
+            this.n = n;
+            this.method = method;
+            this.lattice = lattice;
+            this.bonds = bonds;
+            this.lo = lo;
+            this.hi = hi;
+            this.random = random;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (hi - lo == 1) {
+                Summary one = new Summary();
+                long start = System.nanoTime();
+                if      (lattice != null)           one.add(latticeTrial(lattice, bonds, random));
+                else if (method == Method.DRAWS)    one.add(trial(n, random));
+                else if (method == Method.SHUFFLE)  one.add(shuffledTrial(n, random));
+                else if (method == Method.CRITICAL) one.add(criticalTrial(n, random));
+                else                                one.add(new SweepPercolation(n, random.nextLong()).threshold());
+                one.nanos = System.nanoTime() - start;
+                return one;
+            }
+            int mid = (lo + hi) >>> 1;
+            Trials left = new Trials(n, method, lattice, bonds, lo, mid, random.split());
+            Trials right = new Trials(n, method, lattice, bonds, mid, hi, random);
+            if (!inForkJoinPool()) { // fork() would hand the half to the common pool
+                Summary s = right.compute();
+                s.combine(left.compute());
+                return s;
             }
-            testResults[i] = (double)trial.numberOfOpenSites() / (n*n);
+            left.fork();
+            Summary s = right.compute();
+            s.combine(left.join());
+            return s;
         }
     }
+
+    // running count, mean and sum of squared deviations (Welford), parts are combined by Chan's formula
+    // so that no sum of squares of large numbers is ever taken; also the time the trials took
+    private static class Summary {
+        long count;
+        double mean, m2;
+        long nanos;
+
+        void add(double x) {
+            count++;
+            double d = x - mean;
+            mean += d / count;
+            m2 += d * (x - mean);
+        }
+
+        void combine(Summary that) {
+            nanos += that.nanos;
+            if (that.count == 0) return;
+            long total = count + that.count;
+            double d = that.mean - mean;
+            mean += d * that.count / total;
+            m2 += that.m2 + d * d * ((double) count * that.count / total);
+            count = total;
+        }
+
+        // sample standard deviation, NaN for a single value
+        double stddev() {
+            return Math.sqrt(m2 / (count - 1));
+        }
+    }
+
     // functions used for required statistic analysis
     public double mean() {
-        return StdStats.mean(testResults);
+        return mean;
     }
 
     public double stddev() {
-        return StdStats.stddev(testResults);
+        return stddev;
+    }
+
+    // number of trials made
+    public int trials() {
+        return trials;
+    }
+
+    // mean time a single trial took, in ms
+    public double trialMillis() {
+        return trialMillis;
     }
 
     public double confidenceLo() {
@@ -49,14 +302,40 @@ public class PercolationStats {
         return x + 1.96 * s / Math.sqrt(trials);
     }
 
+    // arguments: n, trials (or the half-width of the interval wanted and a time budget in ms, as in 0.001/60000),
+    // optionally the seed, the number of threads and the method ("draws", "shuffle", "sweep", "critical") or, with
+    // a number of trials, a lattice ("square", "moore", "triangular", "honeycomb", "cubic") and "bond" for bonds
     public static void main(String[] args) {
         int n = Integer.parseInt(args[0]);
-        int trials = Integer.parseInt(args[1]);
-   
-        PercolationStats sim = new PercolationStats(n, trials);
-        
+        int trials = args[1].contains("/") ? 0 : Integer.parseInt(args[1]);
+
+        PercolationStats sim;
+        if (trials == 0) {
+            String[] target = args[1].split("/");
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            Method method = args.length > 4 ? Method.valueOf(args[4].toUpperCase()) : Method.DRAWS;
+            sim = new PercolationStats(n, Double.parseDouble(target[0]), Long.parseLong(target[1]), seed, threads,
+                                       method);
+        }
+        else if (args.length > 2) {
+            long seed = Long.parseLong(args[2]);
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            String model = args.length > 4 ? args[4] : "draws";
+            boolean bonds = args.length > 5 && args[5].equals("bond");
+            boolean method = false;
+            for (Method m : Method.values())
+                method |= m.name().equalsIgnoreCase(model);
+
+            if (method) sim = new PercolationStats(n, trials, seed, threads, Method.valueOf(model.toUpperCase()));
+            else        sim = new PercolationStats(Lattice.of(model, n), bonds, trials, seed, threads);
+        }
+        else sim = new PercolationStats(n, trials);
+
         System.out.println("mean                    = " + sim.mean());
         System.out.println("stddev                  = " + sim.stddev());
         System.out.println("95% confidence interval = [" + sim.confidenceLo() + ", " + sim.confidenceHi() + "]");
+        System.out.println("time per trial          = " + sim.trialMillis() + " ms");
+        System.out.println("trials                  = " + sim.trials());
     }
 }
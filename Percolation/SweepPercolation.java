@@ -0,0 +1,122 @@
+// Percolation of very large n-by-n grids (billions of sites), used by PercolationStats in Method.SWEEP
+// No site is stored: every site gets a pseudo-random value in [0, 1) made from the seed and its (long) index,
+// and is open at occupation p if its value is below p. Whether the grid percolates at p is found by sweeping
+// it row by row (Hoshen-Kopelman): only the cluster labels of the last row and a union-find over them are
+// kept, so memory is O(n) instead of O(n^2). The threshold of the grid - the least p at which it percolates -
+// is then found by bisection, which works since a grid that percolates at p also does at any larger p.
+
+public class SweepPercolation {
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    // bisection steps: the threshold is found to within 2^-24, far less than it varies from grid to grid
+    // (by about n^-3/4) on any grid that fits in a long
+    private static final int STEPS = 24;
+
+    private final int n;
+    private final long seed;
+
+    private int[] prev, cur;             // labels of the sites of the last 2 rows, -1 - closed site
+    private int[] parent;                // union-find over the labels of both rows
+    private boolean[] top, nextTop;      // is the label (of the last row) connected to the top row?
+    private int[] rename;                // new labels of the roots, when a row is done
+
+    public SweepPercolation(int n, long seed) {
+        if (n < 1 || n > Integer.MAX_VALUE / 2) throw new IllegalArgumentException();
+        this.n = n;
+        this.seed = seed;
+        prev = new int[n];
+        cur = new int[n];
+        parent = new int[2*n];
+        top = new boolean[2*n];
+        nextTop = new boolean[2*n];
+        rename = new int[2*n];
+    }
+
+    // 53 random bits out of the state of a site (splitmix64: sites are its consecutive states)
+    private static long bits(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) >>> 11;
+    }
+
+    // least occupation at which the grid percolates (to within 2^-24)
+    public double threshold() {
+        double lo = 0, hi = 1;
+        for (int i = 0; i < STEPS; i++) {
+            double mid = (lo + hi) / 2;
+            if (percolates(mid)) hi = mid;
+            else                 lo = mid;
+        }
+        return hi;
+    }
+
+    // does the grid percolate once every site with value below p is open?
+    public boolean percolates(double p) {
+        int labels = 0; // labels of the previous row are 0..labels-1
+        java.util.Arrays.fill(prev, -1);
+        long limit = (long) Math.ceil(p * 0x1.0p53); // open sites have bits below it
+        long state = seed;
+
+        for (long row = 0; row < n; row++) {
+            for (int l = 0; l < labels; l++)
+                parent[l] = l;
+            int next = labels;
+
+            for (int col = 0; col < n; col++) {
+                state += GAMMA;
+                if (bits(state) >= limit) {
+                    cur[col] = -1;
+                    continue;
+                }
+                // join the cluster above and the one to the left, or start a new one
+                int l = prev[col] >= 0 ? find(prev[col]) : -1;
+                if (col > 0 && cur[col - 1] >= 0) {
+                    int r = find(cur[col - 1]);
+                    if      (l < 0)  l = r;
+                    else if (l != r) {
+                        parent[r] = l;
+                        top[l] |= top[r];
+                    }
+                }
+                if (l < 0) {
+                    l = next++;
+                    parent[l] = l;
+                    top[l] = row == 0;
+                }
+                cur[col] = l;
+            }
+
+            // number the clusters that reach this row from 0 again, keeping their connection to top
+            boolean anyTop = false;
+            java.util.Arrays.fill(rename, 0, next, -1);
+            labels = 0;
+            for (int col = 0; col < n; col++) {
+                if (cur[col] < 0) continue;
+                int r = find(cur[col]);
+                if (rename[r] < 0) {
+                    rename[r] = labels;
+                    nextTop[labels++] = top[r];
+                    anyTop |= top[r];
+                }
+                cur[col] = rename[r];
+            }
+            // every path from top to bottom goes through every row
+            if (!anyTop) return false;
+
+            int[] t = prev; prev = cur; cur = t;
+            boolean[] b = top; top = nextTop; nextTop = b;
+        }
+        return true;
+    }
+
+    private int find(int p) {
+        while (parent[p] != p) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    public int dimension() {
+        return n;
+    }
+}
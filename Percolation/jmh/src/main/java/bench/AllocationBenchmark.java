@@ -0,0 +1,102 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// What the calls of PercolationBenchmark allocate themselves, for gc.alloc.rate.norm of -prof gc: there the grid
+// made for every call is counted too and hides anything the calls add. Here no grid is made while measuring:
+// open() and openAll() take the next of the grids built at the start of the fork (one per iteration, an
+// iteration is a single pass), isFull() runs every pass on one grid opened up to the threshold.
+// So gc.alloc.rate.norm is the allocation of one pass over the n^2 sites: nothing but JMH's own, about 1.6 KB
+// an iteration in baseline.json, as long as the calls allocate nothing; a single object a call would add
+// 16 bytes times n^2. Grids are only up to 1024 (the fork holds one for every iteration)
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = AllocationBenchmark.WARMUP)
+@Measurement(iterations = AllocationBenchmark.MEASUREMENT)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class AllocationBenchmark {
+    static final int WARMUP = 10, MEASUREMENT = 10;
+
+    @State(Scope.Thread)
+    public static class Sites {
+        @Param({ "64", "256", "1024" })
+        int n;
+
+        @Param({ "RANDOM", "ROWS", "CHECKERBOARD" })
+        String order;   // a Grids.Order
+
+        int[] sites;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            sites = Grids.order(n, Grids.Order.valueOf(order));
+        }
+    }
+
+    // grids with every site closed, one for each iteration of the fork
+    @State(Scope.Thread)
+    public static class Empty {
+        private Object[] grids;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Sites s) throws Throwable {
+            grids = new Object[WARMUP + MEASUREMENT];
+            for (int i = 0; i < grids.length; i++)
+                grids[i] = Grids.create(s.n);
+        }
+
+        Object next() {
+            if (next == grids.length)
+                throw new IllegalStateException("at most " + grids.length + " iterations a fork");
+            return grids[next++];
+        }
+    }
+
+    // a single grid opened up to the threshold, shared by all the passes
+    @State(Scope.Thread)
+    public static class Opened {
+        Object grid;
+
+        @Setup(Level.Trial)
+        public void setUp(Sites s) throws Throwable {
+            grid = Grids.create(s.n);
+            Grids.openAll(grid, s.sites, 0, (int) (0.593 * s.sites.length));
+        }
+    }
+
+    @Benchmark
+    public Object open(Sites s, Empty e) throws Throwable {
+        Object grid = e.next();
+        int n = s.n;
+        for (int q : s.sites)
+            Grids.open(grid, q / n + 1, q % n + 1);
+        return grid;
+    }
+
+    @Benchmark
+    public int openAll(Sites s, Empty e) throws Throwable {
+        return Grids.openAll(e.next(), s.sites, 0, s.sites.length);
+    }
+
+    @Benchmark
+    public int isFull(Sites s, Opened o) throws Throwable {
+        int n = s.n, full = 0;
+        for (int q : s.sites)
+            if (Grids.isFull(o.grid, q / n + 1, q % n + 1)) full++;
+        return full;
+    }
+}
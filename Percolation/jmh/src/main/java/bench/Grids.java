@@ -0,0 +1,97 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.SplittableRandom;
+
+// Access to the project's classes from the benchmarks. They are in the default package, which no named package
+// can refer to (and JMH wants one), so they are reached through method handles; held in static finals, these
+// are constants to the JIT and get inlined like direct calls
+final class Grids {
+    static final long SEED = 42;
+
+    // the order the sites are opened in
+    enum Order {
+        RANDOM,      // uniform random permutation, as in the trials
+        ROWS,        // row by row from the top: one cluster that keeps growing, the longest find paths
+        CHECKERBOARD // every other site first (no unions at all), then the rest: each open joins 4 clusters
+    }
+
+    private static final MethodHandle NEW, OPEN, OPEN_ALL, IS_FULL, STATS;
+    private static final Class<?> METHOD;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> perc = Class.forName("Percolation"), stats = Class.forName("PercolationStats");
+            METHOD = Class.forName("PercolationStats$Method");
+            NEW = lookup.findConstructor(perc, MethodType.methodType(void.class, int.class))
+                        .asType(MethodType.methodType(Object.class, int.class));
+            OPEN = lookup.findVirtual(perc, "open", MethodType.methodType(void.class, int.class, int.class))
+                         .asType(MethodType.methodType(void.class, Object.class, int.class, int.class));
+            OPEN_ALL = lookup.findVirtual(perc, "openAll",
+                                          MethodType.methodType(int.class, int[].class, int.class, int.class))
+                             .asType(MethodType.methodType(int.class, Object.class, int[].class, int.class, int.class));
+            IS_FULL = lookup.findVirtual(perc, "isFull", MethodType.methodType(boolean.class, int.class, int.class))
+                            .asType(MethodType.methodType(boolean.class, Object.class, int.class, int.class));
+            STATS = lookup.findConstructor(stats, MethodType.methodType(void.class, int.class, int.class, long.class,
+                                                                        int.class, METHOD))
+                          .asType(MethodType.methodType(Object.class, int.class, int.class, long.class, int.class,
+                                                        Object.class));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Grids() { }
+
+    static Object create(int n) throws Throwable {
+        return (Object) NEW.invokeExact(n);
+    }
+
+    static void open(Object grid, int row, int col) throws Throwable {
+        OPEN.invokeExact(grid, row, col);
+    }
+
+    static int openAll(Object grid, int[] sites, int from, int to) throws Throwable {
+        return (int) OPEN_ALL.invokeExact(grid, sites, from, to);
+    }
+
+    static boolean isFull(Object grid, int row, int col) throws Throwable {
+        return (boolean) IS_FULL.invokeExact(grid, row, col);
+    }
+
+    // a whole PercolationStats run; method - the name of a PercolationStats.Method
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Object stats(int n, int trials, int threads, String method) throws Throwable {
+        Object m = Enum.valueOf((Class) METHOD, method);
+        return (Object) STATS.invokeExact(n, trials, SEED, threads, m);
+    }
+
+    // the sites of an n-by-n grid (as row * n + col, 0-based) in the given order
+    static int[] order(int n, Order kind) {
+        int[] order = new int[n*n];
+        if (kind == Order.CHECKERBOARD) {
+            int k = 0;
+            for (int parity = 0; parity < 2; parity++)
+                for (int row = 0; row < n; row++)
+                    for (int col = (row + parity) % 2; col < n; col += 2)
+                        order[k++] = row * n + col;
+            return order;
+        }
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        if (kind == Order.RANDOM) {
+            SplittableRandom random = new SplittableRandom(SEED);
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int s = order[j];
+                order[j] = order[i];
+                order[i] = s;
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Percolation.open(), openAll() and isFull() on grids from 256 to 8192, for every order of Grids.Order.
+// One operation is a pass over all n^2 sites. Every call changes the grid it runs on (opening sites, and isFull()
+// halves find paths), so each call gets a grid of its own, built before the call and outside the timing.
+// Grids of 64 are in SmallGridBenchmark: a pass there is too short for a setup before every call.
+// (gc.alloc.rate.norm of -prof gc counts the setup too: about 4 bytes a site, the grid itself. What the calls
+// allocate on their own is measured by AllocationBenchmark.)
+// Grids of 8192 take about 600 MB (the grid and its order), hence the heap of the forks
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class PercolationBenchmark {
+
+    // the sites in order, made once for a whole trial
+    @State(Scope.Thread)
+    public static class Sites {
+        @Param({ "256", "1024", "4096", "8192" })
+        int n;
+
+        @Param({ "RANDOM", "ROWS", "CHECKERBOARD" })
+        String order;   // a Grids.Order
+
+        int[] sites;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            sites = Grids.order(n, Grids.Order.valueOf(order));
+        }
+    }
+
+    // a new grid with every site closed
+    @State(Scope.Thread)
+    public static class Empty {
+        Object grid;
+
+        @Setup(Level.Invocation)
+        public void setUp(Sites s) throws Throwable {
+            grid = Grids.create(s.n);
+        }
+    }
+
+    // a new grid opened in order up to the threshold (0.593 of the sites), its find paths not yet halved
+    @State(Scope.Thread)
+    public static class Opened {
+        Object grid;
+
+        @Setup(Level.Invocation)
+        public void setUp(Sites s) throws Throwable {
+            grid = Grids.create(s.n);
+            Grids.openAll(grid, s.sites, 0, (int) (0.593 * s.sites.length));
+        }
+    }
+
+    @Benchmark
+    public Object open(Sites s, Empty e) throws Throwable {
+        int n = s.n;
+        for (int q : s.sites)
+            Grids.open(e.grid, q / n + 1, q % n + 1);
+        return e.grid;
+    }
+
+    @Benchmark
+    public int openAll(Sites s, Empty e) throws Throwable {
+        return Grids.openAll(e.grid, s.sites, 0, s.sites.length);
+    }
+
+    @Benchmark
+    public int isFull(Sites s, Opened o) throws Throwable {
+        int n = s.n, full = 0;
+        for (int q : s.sites)
+            if (Grids.isFull(o.grid, q / n + 1, q % n + 1)) full++;
+        return full;
+    }
+}
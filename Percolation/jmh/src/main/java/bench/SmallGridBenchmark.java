@@ -0,0 +1,107 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The calls of PercolationBenchmark on grids of 64, where a pass over the sites takes some tens of us: a grid
+// built before every call (Level.Invocation) would put JMH's own cost of a setup into numbers that small.
+// Instead an operation is a batch of BATCH passes, each on a grid of its own, all built before the iteration;
+// the batch is timed in ms, so its score reads as the time of a single pass in us. (gc.alloc.rate.norm counts the
+// grids of the batch, about 17 KB each, as PercolationBenchmark's counts its setup.)
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SmallGridBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = SmallGridBenchmark.BATCH)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SmallGridBenchmark {
+    static final int BATCH = 1000;
+
+    @State(Scope.Thread)
+    public static class Sites {
+        @Param({ "64" })
+        int n;
+
+        @Param({ "RANDOM", "ROWS", "CHECKERBOARD" })
+        String order;   // a Grids.Order
+
+        int[] sites;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            sites = Grids.order(n, Grids.Order.valueOf(order));
+        }
+    }
+
+    // a batch of grids with every site closed, one for each pass
+    @State(Scope.Thread)
+    public static class Empty {
+        private final Object[] grids = new Object[BATCH];
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(Sites s) throws Throwable {
+            for (int i = 0; i < grids.length; i++)
+                grids[i] = Grids.create(s.n);
+            next = 0;
+        }
+
+        Object next() {
+            return grids[next++];
+        }
+    }
+
+    // a batch of grids opened in order up to the threshold, their find paths not yet halved
+    @State(Scope.Thread)
+    public static class Opened {
+        private final Object[] grids = new Object[BATCH];
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(Sites s) throws Throwable {
+            for (int i = 0; i < grids.length; i++) {
+                grids[i] = Grids.create(s.n);
+                Grids.openAll(grids[i], s.sites, 0, (int) (0.593 * s.sites.length));
+            }
+            next = 0;
+        }
+
+        Object next() {
+            return grids[next++];
+        }
+    }
+
+    @Benchmark
+    public Object open(Sites s, Empty e) throws Throwable {
+        Object grid = e.next();
+        int n = s.n;
+        for (int q : s.sites)
+            Grids.open(grid, q / n + 1, q % n + 1);
+        return grid;
+    }
+
+    @Benchmark
+    public int openAll(Sites s, Empty e) throws Throwable {
+        return Grids.openAll(e.next(), s.sites, 0, s.sites.length);
+    }
+
+    @Benchmark
+    public int isFull(Sites s, Opened o) throws Throwable {
+        Object grid = o.next();
+        int n = s.n, full = 0;
+        for (int q : s.sites)
+            if (Grids.isFull(grid, q / n + 1, q % n + 1)) full++;
+        return full;
+    }
+}
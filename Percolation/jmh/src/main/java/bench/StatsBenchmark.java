@@ -0,0 +1,37 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The whole PercolationStats loop: TRIALS trials by the method of trials given, on the benchmark's own thread
+// (a single thread starts no pool), so gc.alloc.rate.norm of -prof gc counts everything the trials allocate
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class StatsBenchmark {
+    private static final int TRIALS = 16;
+
+    @Param({ "64", "128", "256", "512" })
+    int n;
+
+    @Param({ "DRAWS", "CRITICAL" })
+    String method;
+
+    @Benchmark
+    public Object stats() throws Throwable {
+        return Grids.stats(n, TRIALS, 1, method);
+    }
+}